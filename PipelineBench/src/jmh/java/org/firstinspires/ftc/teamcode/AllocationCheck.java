@@ -0,0 +1,79 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks that ContourPipeline's processFrame stays within its allocation budget once warmed up:
+ * no native buffer is created again, and the Java heap allocation per frame stays under
+ * {@link #FRAME_BYTES} plus {@link #CONTOUR_BYTES} for each contour.
+ *
+ * The heap part can't be zero with the OpenCV Java bindings. findContours returns a new
+ * MatOfPoint per contour, boundingRect a new Rect, and every frame publishes a new immutable
+ * ContourDetection for other threads to read. What is checked is that nothing else creeps in.
+ * The frames are generated, so the contour count is known. Exits with 1 on the first failure.
+ */
+public class AllocationCheck {
+    static final long FRAME_BYTES = 512;
+    static final long CONTOUR_BYTES = 256;
+    static final int WARMUP_FRAMES = 2000;
+    static final int MEASURED_FRAMES = 1000;
+
+    public static void main(String[] args) {
+        nu.pattern.OpenCV.loadLocally();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        for (int blobs : new int[]{0, 4}) {
+            Mat frame = syntheticFrame(blobs);
+            int contours = blobs + 1;
+            for (int scale : new int[]{1, 2}) {
+                ContourPipeline pipeline = new ContourPipeline(0.2, 0.2, 0.2, 0.2);
+                pipeline.setOverlayEnabled(false);
+                pipeline.setPyramidScale(scale);
+                Mat work = new Mat();
+                for (int i = 0; i < WARMUP_FRAMES; i++) {
+                    frame.copyTo(work);
+                    pipeline.processFrame(work);
+                }
+
+                pipeline.resetBufferReallocationCount();
+                long before = threads.getThreadAllocatedBytes(thread);
+                for (int i = 0; i < MEASURED_FRAMES; i++) {
+                    frame.copyTo(work);
+                    pipeline.processFrame(work);
+                }
+                long perFrame = (threads.getThreadAllocatedBytes(thread) - before) / MEASURED_FRAMES;
+                long budget = FRAME_BYTES + CONTOUR_BYTES * contours;
+
+                System.out.printf("scale %d, %d contours: %d bytes per frame (budget %d), %d buffers recreated%n",
+                        scale, contours, perFrame, budget, pipeline.getBufferReallocationCount());
+                if (pipeline.getBufferReallocationCount() != 0 || perFrame > budget) {
+                    System.err.println("ContourPipeline allocates more per frame than it should");
+                    System.exit(1);
+                }
+                work.release();
+            }
+            frame.release();
+        }
+    }
+
+    /**
+     * A marker inside the default borders plus this many smaller blobs, all in the default bounds.
+     */
+    private static Mat syntheticFrame(int blobs) {
+        Scalar marker = new Scalar(255, 40, 180);
+        Mat frame = new Mat(480, 640, CvType.CV_8UC3, new Scalar(0, 0, 0));
+        Imgproc.ellipse(frame, new Point(300, 240), new Size(60, 50), 0, 0, 360, marker, -1);
+        for (int i = 0; i < blobs; i++) {
+            Imgproc.ellipse(frame, new Point(200 + 60 * i, 360), new Size(20, 15), 0, 0, 360, marker, -1);
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,147 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.openftc.easyopencv.OpenCvPipeline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs processFrame of each pipeline over recorded frames, the desktop counterpart of
+ * RHSPipelineBenchmark. frames is either a directory of PNGs or a ring file written by
+ * {@link FrameRecorder}; every frame is scaled to the resolution once at setup and copied into a
+ * work Mat before each call, because pipelines draw on their input.
+ *
+ * The overlay is off, like during a match. Run with -prof gc for the allocation per frame.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProcessFrameBenchmark {
+    static {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    @Param({"ContourPipeline", "ContourPipelineFused", "SamplePipeline", "SamplePipelineFused",
+            "StageSwitchingPipeline", "VisionGraph"})
+    public String pipeline;
+
+    @Param({"320x240", "640x480"})
+    public String resolution;
+
+    @Param({"frames"})
+    public String frames;
+
+    private final List<Mat> loaded = new ArrayList<>();
+    private final Mat work = new Mat();
+    private OpenCvPipeline running;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        String[] size = resolution.split("x");
+        loadFrames(new File(frames), new Size(Integer.parseInt(size[0]), Integer.parseInt(size[1])));
+        if (loaded.isEmpty()) {
+            throw new IllegalStateException("No frames in " + frames + "; pass -Pframes=<PNG directory or ring file>");
+        }
+        running = newPipeline(pipeline);
+        loaded.get(0).copyTo(work);
+        running.init(work);
+    }
+
+    @Setup(Level.Invocation)
+    public void nextFrame() {
+        loaded.get(next).copyTo(work);
+        next = (next + 1) % loaded.size();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Mat framesPerSecond() {
+        return running.processFrame(work);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Mat latency() {
+        return running.processFrame(work);
+    }
+
+    @TearDown(Level.Trial)
+    public void release() {
+        for (Mat frame : loaded) {
+            frame.release();
+        }
+        loaded.clear();
+        work.release();
+    }
+
+    private void loadFrames(File path, Size size) throws IOException {
+        FrameSource source = path.isDirectory()
+                ? new PngDirectoryFrameSource(path, 30)
+                : new RingFileFrameSource(path);
+        Mat frame = new Mat();
+        try {
+            while (source.next(frame) >= 0) {
+                Mat scaled = new Mat();
+                Imgproc.resize(frame, scaled, size, 0, 0, Imgproc.INTER_AREA);
+                loaded.add(scaled);
+            }
+        } finally {
+            frame.release();
+            source.close();
+        }
+    }
+
+    private static OpenCvPipeline newPipeline(String name) {
+        switch (name) {
+            case "ContourPipeline":
+            case "ContourPipelineFused": {
+                ContourPipeline contour = new ContourPipeline(0.2, 0.2, 0.2, 0.2);
+                contour.setFusedChroma(name.endsWith("Fused"));
+                contour.setOverlayEnabled(false);
+                return contour;
+            }
+            case "SamplePipeline":
+            case "SamplePipelineFused": {
+                SamplePipeline sample = new SamplePipeline();
+                sample.setFusedChroma(name.endsWith("Fused"));
+                sample.setOverlayEnabled(false);
+                return sample;
+            }
+            case "StageSwitchingPipeline": {
+                StageSwitchingPipeline stages = new StageSwitchingPipeline();
+                stages.setOverlayEnabled(false);
+                return stages;
+            }
+            case "VisionGraph": {
+                VisionGraph graph = new VisionGraph(new BarcodeNode(0.2, 0.2, 0.2, 0.2), new FreightNode());
+                graph.setOverlayEnabled(false);
+                return graph;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown pipeline " + name);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that StripSegmenter's merged mask is the same, pixel for pixel, as ContourPipeline's
+ * serial cvtColor, inRange, open/close and blur chain. Frames of random blocks are always
+ * checked, since they put edges on every seam; recorded frames are added when a path is given.
+ *
+ * Exits with 1 on the first mismatch.
+ */
+public class StripSegmenterCheck {
+    static final Size[] SIZES = {new Size(160, 120), new Size(320, 240), new Size(640, 480), new Size(321, 239)};
+    static final int MAX_STRIPS = 4;
+    static final int NOISE_FRAMES = 4;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        nu.pattern.OpenCV.loadLocally();
+
+        List<Mat> frames = new ArrayList<>();
+        Core.setRNGSeed(8);
+        for (int i = 0; i < NOISE_FRAMES; i++) {
+            // Wide blocks of noise: some outlive the open, and their edges are long enough for the
+            // faint tail of the blur to round differently when a seam is short of context
+            Mat noise = new Mat(140 + 3 * i, 20 + 3 * i, CvType.CV_8UC3);
+            Core.randu(noise, 0, 256);
+            Mat blocks = new Mat();
+            Imgproc.resize(noise, blocks, new Size(640, 480), 0, 0, Imgproc.INTER_NEAREST);
+            noise.release();
+            frames.add(blocks);
+        }
+        if (args.length > 0) {
+            loadFrames(new File(args[0]), frames);
+        }
+
+        Mat openKernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(3, 3));
+        Mat closeKernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(3, 3));
+        Scalar lower = ContourPipeline.scalarLowerYCrCb;
+        Scalar upper = ContourPipeline.scalarUpperYCrCb;
+        Mat yCrCb = new Mat();
+        Mat serial = new Mat();
+        Mat diff = new Mat();
+        // Two inputs per size, handed in alternately like the pipelined pyramid buffers
+        Mat[] scaled = {new Mat(), new Mat()};
+
+        int checked = 0;
+        for (int strips = 2; strips <= MAX_STRIPS; strips++) {
+            StripSegmenter segmenter = new StripSegmenter(strips, openKernel, closeKernel, ContourPipeline.BLUR_SIZE);
+            for (Size size : SIZES) {
+                for (int i = 0; i < frames.size(); i++) {
+                    Mat input = scaled[i % scaled.length];
+                    Imgproc.resize(frames.get(i), input, size, 0, 0, Imgproc.INTER_AREA);
+
+                    Imgproc.cvtColor(input, yCrCb, Imgproc.COLOR_RGB2YCrCb);
+                    Core.inRange(yCrCb, lower, upper, serial);
+                    Imgproc.morphologyEx(serial, serial, Imgproc.MORPH_OPEN, openKernel);
+                    Imgproc.morphologyEx(serial, serial, Imgproc.MORPH_CLOSE, closeKernel);
+                    Imgproc.GaussianBlur(serial, serial, ContourPipeline.BLUR_SIZE, 0.00);
+
+                    Core.absdiff(segmenter.segment(input, lower, upper), serial, diff);
+                    int differing = Core.countNonZero(diff);
+                    if (differing != 0) {
+                        System.err.printf("%d strips, %dx%d, frame %d: %d pixels differ from the serial mask%n",
+                                strips, (int) size.width, (int) size.height, i, differing);
+                        System.exit(1);
+                    }
+                    checked++;
+                }
+            }
+            segmenter.release();
+        }
+        System.out.printf("%d strip masks match the serial mask (overlap %d rows)%n", checked,
+                StripSegmenter.overlapFor(openKernel, closeKernel, ContourPipeline.BLUR_SIZE));
+    }
+
+    private static void loadFrames(File path, List<Mat> frames) throws IOException {
+        FrameSource source = path.isDirectory()
+                ? new PngDirectoryFrameSource(path, 30)
+                : new RingFileFrameSource(path);
+        try {
+            Mat frame = new Mat();
+            while (source.next(frame) >= 0) {
+                frames.add(frame);
+                frame = new Mat();
+            }
+            frame.release();
+        } finally {
+            source.close();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.openftc.easyopencv;
+
+import org.opencv.core.Mat;
+
+/**
+ * Stand-in for EasyOpenCV's OpenCvPipeline with the same methods, so the TeamCode pipelines
+ * compile and run on a workstation without the camera library. Nothing calls onViewportTapped
+ * here; the benchmark calls init and processFrame like the camera thread would.
+ */
+public abstract class OpenCvPipeline {
+    public abstract Mat processFrame(Mat input);
+
+    public void onViewportTapped() {
+    }
+
+    public void init(Mat mat) {
+    }
+}
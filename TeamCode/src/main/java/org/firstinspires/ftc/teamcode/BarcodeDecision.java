@@ -0,0 +1,138 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * Decides which barcode position the marker is on from the last few frames instead of a single
+ * one. Every new ContourPipeline frame casts one vote into a fixed-size ring; the answer is the
+ * position with the most votes and the confidence is its share of the ring.
+ *
+ * Once the ring is full and the confidence in a position reaches the lock threshold the decision
+ * locks and no longer changes, so the camera can be stopped and autonomous code can keep asking
+ * {@link #getPosition()} without the pipeline running. NONE never locks: not seeing the marker
+ * (not placed yet, bounds not calibrated yet) is not an answer. {@link #reset()} reopens the vote.
+ */
+public class BarcodeDecision {
+    public enum Position {
+        NONE, LEFT, CENTER, RIGHT
+    }
+
+    private static final Position[] POSITIONS = Position.values();
+
+    private final double minAreaFraction; // of the frame area, so it holds at any resolution
+    private final double leftBoundary;    // fraction of the frame width
+    private final double rightBoundary;
+    private final double lockConfidence;
+
+    private final Position[] votes;
+    private final int[] counts = new int[POSITIONS.length];
+    private int next = 0;
+    private int filled = 0;
+    private long lastFrameSequence = -1;
+    private int lastFrameWidth;
+    private int lastFrameHeight;
+
+    private volatile Position position = Position.NONE;
+    private volatile double confidence = 0;
+    private volatile boolean locked = false;
+
+    /**
+     * @param minAreaFraction smallest rect, as a fraction of the frame area, that counts as the marker
+     * @param windowFrames   how many frames vote
+     * @param lockConfidence share of the window (0-1) the winner needs to lock the decision
+     */
+    public BarcodeDecision(double minAreaFraction, double leftBoundary, double rightBoundary,
+                           int windowFrames, double lockConfidence) {
+        this.minAreaFraction = minAreaFraction;
+        this.leftBoundary = leftBoundary;
+        this.rightBoundary = rightBoundary;
+        this.lockConfidence = lockConfidence;
+        this.votes = new Position[windowFrames];
+    }
+
+    /**
+     * Count the detection's vote, unless it is a frame already counted or the decision is locked.
+     * Votes cast at another resolution are dropped first.
+     *
+     * @return true if the decision is locked
+     */
+    public boolean update(ContourDetection detection) {
+        if (locked || detection.frameSequence == lastFrameSequence || detection.frameSequence == 0) {
+            return locked;
+        }
+        lastFrameSequence = detection.frameSequence;
+        if (detection.frameWidth != lastFrameWidth || detection.frameHeight != lastFrameHeight) {
+            if (filled > 0) {
+                reset();
+            }
+            lastFrameWidth = detection.frameWidth;
+            lastFrameHeight = detection.frameHeight;
+        }
+
+        Position vote = classify(detection);
+        if (filled == votes.length) {
+            counts[votes[next].ordinal()]--;
+        } else {
+            filled++;
+        }
+        votes[next] = vote;
+        counts[vote.ordinal()]++;
+        next = (next + 1) % votes.length;
+
+        int best = 0;
+        for (int i = 1; i < counts.length; i++) {
+            if (counts[i] > counts[best]) {
+                best = i;
+            }
+        }
+        position = POSITIONS[best];
+        confidence = (double) counts[best] / votes.length;
+        locked = filled == votes.length && position != Position.NONE && confidence >= lockConfidence;
+        return locked;
+    }
+
+    /**
+     * Forget every vote and unlock, e.g. when the field may have changed since the votes were cast.
+     */
+    public void reset() {
+        for (int i = 0; i < votes.length; i++) {
+            votes[i] = null;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        next = 0;
+        filled = 0;
+        position = Position.NONE;
+        confidence = 0;
+        locked = false;
+    }
+
+    public Position classify(ContourDetection detection) {
+        if (detection.frameWidth == 0
+                || detection.area <= minAreaFraction * detection.frameWidth * detection.frameHeight) {
+            return Position.NONE;
+        }
+        if (detection.midpointX > rightBoundary * detection.frameWidth) {
+            return Position.RIGHT;
+        }
+        if (detection.midpointX < leftBoundary * detection.frameWidth) {
+            return Position.LEFT;
+        }
+        return Position.CENTER;
+    }
+
+    public Position getPosition() {
+        return position;
+    }
+
+    /**
+     * @return share of the whole window that voted for {@link #getPosition()}, so it only
+     * reaches 1 once the window is full
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public boolean isLocked() {
+        return locked;
+    }
+}
@@ -0,0 +1,84 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The barcode marker detector for a {@link VisionGraph}: the largest contour of the shared mask
+ * that lies inside the borders, published as a {@link ContourDetection} like ContourPipeline's.
+ * The mask and the contour filters are ContourPipeline's, so both find the same marker; its
+ * cropping, pyramid and tracking are left out, they need their own copies of the frame.
+ */
+public class BarcodeNode implements VisionNode {
+    private final double borderLeftX;   // fractions of the frame, as for ContourPipeline
+    private final double borderRightX;
+    private final double borderTopY;
+    private final double borderBottomY;
+
+    private final Mat hierarchy = new Mat();
+    private final List<MatOfPoint> contours = new ArrayList<>();
+
+    private volatile ContourDetection detection = ContourDetection.EMPTY;
+
+    public BarcodeNode(double borderLeftX, double borderRightX, double borderTopY, double borderBottomY) {
+        this.borderLeftX = borderLeftX;
+        this.borderRightX = borderRightX;
+        this.borderTopY = borderTopY;
+        this.borderBottomY = borderBottomY;
+    }
+
+    @Override
+    public Set<VisionGraph.Input> getInputs() {
+        return EnumSet.of(VisionGraph.Input.MASK);
+    }
+
+    @Override
+    public void process(VisionGraph.Frame frame) {
+        for (MatOfPoint contour : contours) {
+            contour.release();
+        }
+        contours.clear();
+        Imgproc.findContours(frame.get(VisionGraph.Input.MASK), contours, hierarchy,
+                Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
+
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        Rect maxRect = null;
+        for (MatOfPoint contour : contours) {
+            if (contour.rows() >= ContourPipeline.MIN_CONTOUR_POINTS) {
+                Rect rect = Imgproc.boundingRect(contour);
+                if (ContourPipeline.insideBorders(rect, width, height, borderLeftX, borderRightX, borderTopY, borderBottomY)
+                        && (maxRect == null || rect.area() > maxRect.area())) {
+                    maxRect = rect;
+                }
+            }
+        }
+        if (maxRect == null) {
+            maxRect = new Rect();
+        }
+        detection = new ContourDetection(maxRect.x, maxRect.y, maxRect.width, maxRect.height,
+                width, height, frame.getSequence(), frame.getCaptureTimeNanos(),
+                frame.getCaptureTimeNanos(), System.nanoTime(), Collections.<TrackedBlob>emptyList(),
+                maxRect.x, maxRect.y, maxRect.width, maxRect.height);
+    }
+
+    @Override
+    public void drawOverlay(Mat output) {
+        ContourDetection detection = this.detection;
+        if (detection.area > 0) {
+            Imgproc.rectangle(output, detection.getRect(), ContourPipeline.RECT_COLOR, 2);
+        }
+    }
+
+    public ContourDetection getDetection() {
+        return detection;
+    }
+}
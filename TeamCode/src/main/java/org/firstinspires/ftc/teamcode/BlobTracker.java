@@ -0,0 +1,190 @@
+package org.firstinspires.ftc.teamcode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the N largest blobs of each frame and gives them ids that persist across frames by
+ * matching each blob to the nearest centroid from the previous frame.
+ *
+ * Call {@link #offer} for every candidate rect of a frame, then {@link #update} once. Offering
+ * is O(N) per candidate so a frame stays linear in the number of contours; matching is O(N^2)
+ * on the handful of kept blobs. Not thread safe, it is meant to live on the camera thread.
+ */
+public class BlobTracker {
+    // Tracks that go unmatched are remembered this many frames so a one frame dropout does not
+    // hand the blob a new id.
+    static final int MAX_MISSED_FRAMES = 3;
+
+    private final int maxTargets;
+    private final double maxMatchDistance;
+
+    // Top N candidates of the current frame, sorted largest area first
+    private final int[] candX, candY, candW, candH;
+    private final double[] candArea;
+    private int candCount;
+
+    // Tracks from the previous frame(s), double buffered
+    private int[] trackId, trackAge, trackMissed;
+    private double[] trackCx, trackCy;
+    private int trackCount;
+    private int[] nextId, nextAge, nextMissed;
+    private double[] nextCx, nextCy;
+    private final boolean[] claimed;
+
+    private int nextTrackId = 1;
+
+    public BlobTracker(int maxTargets, double maxMatchDistance) {
+        if (maxTargets < 1) {
+            throw new IllegalArgumentException("maxTargets must be at least 1, was " + maxTargets);
+        }
+        this.maxTargets = maxTargets;
+        this.maxMatchDistance = maxMatchDistance;
+
+        candX = new int[maxTargets];
+        candY = new int[maxTargets];
+        candW = new int[maxTargets];
+        candH = new int[maxTargets];
+        candArea = new double[maxTargets];
+
+        // Room for this frame's blobs plus the ones we are still remembering
+        int trackCapacity = maxTargets * (MAX_MISSED_FRAMES + 1);
+        trackId = new int[trackCapacity];
+        trackAge = new int[trackCapacity];
+        trackMissed = new int[trackCapacity];
+        trackCx = new double[trackCapacity];
+        trackCy = new double[trackCapacity];
+        nextId = new int[trackCapacity];
+        nextAge = new int[trackCapacity];
+        nextMissed = new int[trackCapacity];
+        nextCx = new double[trackCapacity];
+        nextCy = new double[trackCapacity];
+        claimed = new boolean[trackCapacity];
+    }
+
+    public int getMaxTargets() {
+        return maxTargets;
+    }
+
+    /**
+     * Offer a candidate rect for the current frame. Only the largest maxTargets are kept.
+     */
+    public void offer(int x, int y, int width, int height) {
+        double area = (double) width * height;
+        if (candCount == maxTargets && area <= candArea[candCount - 1]) {
+            return;
+        }
+
+        int i = candCount < maxTargets ? candCount++ : candCount - 1;
+        while (i > 0 && candArea[i - 1] < area) {
+            candX[i] = candX[i - 1];
+            candY[i] = candY[i - 1];
+            candW[i] = candW[i - 1];
+            candH[i] = candH[i - 1];
+            candArea[i] = candArea[i - 1];
+            i--;
+        }
+        candX[i] = x;
+        candY[i] = y;
+        candW[i] = width;
+        candH[i] = height;
+        candArea[i] = area;
+    }
+
+    /**
+     * Match the offered candidates to the existing tracks and start a new frame.
+     *
+     * @return the blobs of this frame, largest first
+     */
+    public List<TrackedBlob> update() {
+        List<TrackedBlob> blobs = candCount == 0
+                ? Collections.<TrackedBlob>emptyList()
+                : new ArrayList<TrackedBlob>(candCount);
+        for (int t = 0; t < trackCount; t++) {
+            claimed[t] = false;
+        }
+
+        int nextCount = 0;
+        double maxDistanceSquared = maxMatchDistance * maxMatchDistance;
+        for (int c = 0; c < candCount; c++) {
+            double cx = candX[c] + candW[c] / 2.0;
+            double cy = candY[c] + candH[c] / 2.0;
+
+            // Largest blobs pick first, so they win ties for a track
+            int best = -1;
+            double bestDistanceSquared = maxDistanceSquared;
+            for (int t = 0; t < trackCount; t++) {
+                if (claimed[t]) {
+                    continue;
+                }
+                double dx = trackCx[t] - cx;
+                double dy = trackCy[t] - cy;
+                double distanceSquared = dx * dx + dy * dy;
+                if (distanceSquared <= bestDistanceSquared) {
+                    bestDistanceSquared = distanceSquared;
+                    best = t;
+                }
+            }
+
+            int id;
+            int age;
+            if (best >= 0) {
+                claimed[best] = true;
+                id = trackId[best];
+                age = trackAge[best] + 1;
+            } else {
+                id = nextTrackId++;
+                age = 1;
+            }
+            nextId[nextCount] = id;
+            nextAge[nextCount] = age;
+            nextMissed[nextCount] = 0;
+            nextCx[nextCount] = cx;
+            nextCy[nextCount] = cy;
+            nextCount++;
+
+            blobs.add(new TrackedBlob(id, candX[c], candY[c], candW[c], candH[c], age));
+        }
+
+        // Keep unmatched tracks around for a few frames
+        for (int t = 0; t < trackCount && nextCount < nextId.length; t++) {
+            if (!claimed[t] && trackMissed[t] < MAX_MISSED_FRAMES) {
+                nextId[nextCount] = trackId[t];
+                nextAge[nextCount] = trackAge[t];
+                nextMissed[nextCount] = trackMissed[t] + 1;
+                nextCx[nextCount] = trackCx[t];
+                nextCy[nextCount] = trackCy[t];
+                nextCount++;
+            }
+        }
+
+        swapTracks(nextCount);
+        candCount = 0;
+        return blobs.isEmpty() ? blobs : Collections.unmodifiableList(blobs);
+    }
+
+    private void swapTracks(int count) {
+        int[] ids = trackId;
+        trackId = nextId;
+        nextId = ids;
+
+        int[] ages = trackAge;
+        trackAge = nextAge;
+        nextAge = ages;
+
+        int[] missed = trackMissed;
+        trackMissed = nextMissed;
+        nextMissed = missed;
+
+        double[] cxs = trackCx;
+        trackCx = nextCx;
+        nextCx = cxs;
+
+        double[] cys = trackCy;
+        trackCy = nextCy;
+        nextCy = cys;
+
+        trackCount = count;
+    }
+}
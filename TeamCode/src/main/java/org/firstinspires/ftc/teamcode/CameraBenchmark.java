@@ -0,0 +1,155 @@
+package org.firstinspires.ftc.teamcode;
+
+import android.os.Debug;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+
+import org.firstinspires.ftc.robotcore.external.hardware.camera.WebcamName;
+import org.openftc.easyopencv.OpenCvCamera;
+import org.openftc.easyopencv.OpenCvCameraFactory;
+import org.openftc.easyopencv.OpenCvCameraRotation;
+import org.openftc.easyopencv.OpenCvPipeline;
+
+import java.util.Locale;
+
+/**
+ * Base of the benchmark OpModes that run a pipeline on live frames from webcam1 and show what
+ * it measured on telemetry until stopped. Subclasses supply the pipeline and the telemetry.
+ *
+ * Pipelines that compare two ways of doing the same work extend {@link ComparisonPipeline} and
+ * time each way with a {@link Section}, which also counts what the camera thread allocated on
+ * the Java heap in between. Allocation counting is only switched on for those.
+ */
+public abstract class CameraBenchmark extends LinearOpMode {
+    private final int width;
+    private final int height;
+
+    protected OpenCvCamera webcam;
+
+    protected CameraBenchmark(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    protected abstract OpenCvPipeline createPipeline();
+
+    /**
+     * Called about every 100 ms while running; telemetry.update() follows.
+     */
+    protected abstract void addTelemetry();
+
+    /**
+     * Called once after start, before the first {@link #addTelemetry()}.
+     */
+    protected void onStart() {
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void runOpMode() {
+        int cameraMonitorViewId = hardwareMap.appContext.getResources().getIdentifier("cameraMonitorViewId", "id", hardwareMap.appContext.getPackageName());
+        webcam = OpenCvCameraFactory.getInstance().createWebcam(hardwareMap.get(WebcamName.class, "webcam1"), cameraMonitorViewId);
+
+        OpenCvPipeline pipeline = createPipeline();
+        boolean countAllocations = pipeline instanceof ComparisonPipeline;
+        if (countAllocations) {
+            // Slows allocation down a little for every thread, so only while comparing
+            Debug.startAllocCounting();
+        }
+        webcam.setPipeline(pipeline);
+
+        webcam.openCameraDeviceAsync(new OpenCvCamera.AsyncCameraOpenListener() {
+            @Override
+            public void onOpened() {
+                webcam.startStreaming(width, height, OpenCvCameraRotation.UPRIGHT);
+            }
+
+            @Override
+            public void onError(int errorCode) {
+
+            }
+        });
+        try {
+            waitForStart();
+            onStart();
+
+            while (opModeIsActive()) {
+                addTelemetry();
+                telemetry.update();
+                sleep(100);
+            }
+        } finally {
+            if (countAllocations) {
+                Debug.stopAllocCounting();
+            }
+        }
+    }
+
+    static double smooth(double average, double sample) {
+        return average == 0 ? sample : average + (sample - average) * OverlayPipeline.TIME_SMOOTHING;
+    }
+
+    /**
+     * A pipeline that runs two paths over the same frame and checks that they agree. A
+     * disagreement is counted rather than thrown, so one odd frame does not stop the camera.
+     */
+    public abstract static class ComparisonPipeline extends OpenCvPipeline {
+        volatile long frames;
+        volatile long mismatches;
+
+        protected void countFrame(boolean pathsAgree) {
+            frames++;
+            if (!pathsAgree) {
+                mismatches++;
+            }
+        }
+    }
+
+    /**
+     * Running averages of the time taken and the Java objects and bytes the calling thread
+     * allocated between {@link #start()} and {@link #stop()}. The allocation figures are
+     * measured by the runtime, so they include whatever the OpenCV bindings allocate.
+     */
+    @SuppressWarnings("deprecation")
+    public static class Section {
+        private volatile double ms;
+        private volatile double objects;
+        private volatile double bytes;
+
+        private long startNanos;
+        private long startObjects;
+        private long startBytes;
+
+        public void start() {
+            startObjects = Debug.getThreadAllocCount();
+            startBytes = Debug.getThreadAllocSize();
+            startNanos = System.nanoTime();
+        }
+
+        public void stop() {
+            long nanos = System.nanoTime() - startNanos;
+            long allocatedObjects = Debug.getThreadAllocCount() - startObjects;
+            long allocatedBytes = Debug.getThreadAllocSize() - startBytes;
+            ms = smooth(ms, nanos / 1e6);
+            objects = smooth(objects, allocatedObjects);
+            bytes = smooth(bytes, allocatedBytes);
+        }
+
+        public double getMs() {
+            return ms;
+        }
+
+        public double getObjects() {
+            return objects;
+        }
+
+        public double getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%.3f ms  %.0f objects  %.0f B", ms, objects, bytes);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package org.firstinspires.ftc.teamcode;
+
+import android.os.Process;
+
+import org.opencv.core.Mat;
+import org.openftc.easyopencv.OpenCvCamera;
+import org.openftc.easyopencv.OpenCvCameraRotation;
+import org.openftc.easyopencv.OpenCvPipeline;
+import org.openftc.easyopencv.OpenCvWebcam;
+
+/**
+ * Changes the webcam resolution and pipeline frame rate to suit what the OpMode is doing:
+ * <ul>
+ *     <li>SEARCHING - full resolution and rate until the target has been found</li>
+ *     <li>TRACKING - a lower resolution and rate once we know where it is</li>
+ *     <li>PAUSED - not streaming at all, e.g. after the barcode decision has locked</li>
+ * </ul>
+ * The OpMode requests a state from any thread and calls {@link #update()} from its loop, which
+ * is where streaming is restarted, since start/stopStreaming block for a while and must not be
+ * called from the frame worker thread.
+ *
+ * A restart costs a few hundred ms of frames, so {@link #acquired(boolean)} only switches
+ * between SEARCHING and TRACKING once the target has stayed found (or lost) for the switch
+ * delay; a single missed or spurious detection doesn't restart the stream.
+ *
+ * EasyOpenCV can't ask the UVC driver for a lower frame rate, so the target fps is met by
+ * passing frames straight through without running the pipeline on them.
+ *
+ * The governor also measures what it hands back: the process CPU load (in cores) and the
+ * OpMode loop rate, for each state.
+ */
+public class CameraGovernor {
+    public enum State {
+        SEARCHING, TRACKING, PAUSED
+    }
+
+    private static final long MEASURE_INTERVAL_NANOS = 500_000_000L;
+    static final long DEFAULT_SWITCH_DELAY_MS = 300;
+
+    private final OpenCvWebcam webcam;
+    private final OpenCvCameraRotation rotation;
+    private final ThrottledPipeline throttle;
+
+    private final int[] widths = {640, 320, 0};
+    private final int[] heights = {480, 240, 0};
+    private final double[] targetFps = {0, 15, 0};  // 0 runs the pipeline on every frame
+
+    private volatile State requested = State.SEARCHING;
+    private State resumeState = State.SEARCHING;
+    private boolean opened = false;
+    private boolean closed = false;
+    private int streamingWidth = 0;
+    private int streamingHeight = 0;
+    private final int[] restarts = new int[State.values().length];  // guarded by this
+
+    private long switchDelayNanos = DEFAULT_SWITCH_DELAY_MS * 1000000L;
+    private boolean lastAcquired = false;
+    private long acquiredSinceNanos = 0;
+
+    private long measureStartNanos = 0;
+    private long measureStartCpuMs = 0;
+    private int loops = 0;
+    private final double[] cpuLoad = new double[State.values().length];
+    private final double[] loopHz = new double[State.values().length];
+
+    public CameraGovernor(OpenCvWebcam webcam, OpenCvPipeline pipeline, OpenCvCameraRotation rotation) {
+        this.webcam = webcam;
+        this.rotation = rotation;
+        this.throttle = new ThrottledPipeline(pipeline);
+        webcam.setPipeline(throttle);
+    }
+
+    public void setResolution(State state, int width, int height) {
+        widths[state.ordinal()] = width;
+        heights[state.ordinal()] = height;
+    }
+
+    public void setTargetFps(State state, double fps) {
+        targetFps[state.ordinal()] = fps;
+    }
+
+    /**
+     * Open the camera and start streaming in the requested state as soon as it is open.
+     */
+    public void open() {
+        webcam.openCameraDeviceAsync(new OpenCvCamera.AsyncCameraOpenListener() {
+            @Override
+            public void onOpened() {
+                synchronized (CameraGovernor.this) {
+                    opened = true;
+                    if (!closed) {
+                        apply(requested);
+                    }
+                }
+            }
+
+            @Override
+            public void onError(int errorCode) {
+
+            }
+        });
+    }
+
+    public synchronized void request(State state) {
+        if (state == State.PAUSED && requested != State.PAUSED) {
+            resumeState = requested;
+        }
+        requested = state;
+    }
+
+    /**
+     * How long the target has to stay found, or lost, before {@link #acquired(boolean)} switches
+     * state.
+     */
+    public synchronized void setSwitchDelayMs(long switchDelayMs) {
+        this.switchDelayNanos = switchDelayMs * 1000000L;
+    }
+
+    /**
+     * Track the target while it is in view and search for it when it is lost, once that has
+     * held for the switch delay. Call with every new detection. Ignored while paused so a lost
+     * target doesn't restart the camera.
+     */
+    public synchronized void acquired(boolean acquired) {
+        if (requested == State.PAUSED) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (acquired != lastAcquired || acquiredSinceNanos == 0) {
+            lastAcquired = acquired;
+            acquiredSinceNanos = now;
+        }
+        State wanted = acquired ? State.TRACKING : State.SEARCHING;
+        if (wanted != requested && now - acquiredSinceNanos >= switchDelayNanos) {
+            requested = wanted;
+        }
+    }
+
+    public void pause() {
+        request(State.PAUSED);
+    }
+
+    /**
+     * Go back to the state we were in before {@link #pause()}.
+     */
+    public synchronized void resume() {
+        if (requested == State.PAUSED) {
+            requested = resumeState;
+            // What was seen before the pause says nothing about now
+            acquiredSinceNanos = 0;
+        }
+    }
+
+    /**
+     * Call once per OpMode loop. Applies the requested state and measures the loop rate and
+     * CPU load for it.
+     */
+    public void update() {
+        State state = requested;
+        synchronized (this) {
+            if (opened && !closed) {
+                apply(state);
+            }
+        }
+
+        long now = System.nanoTime();
+        loops++;
+        if (measureStartNanos == 0) {
+            measureStartNanos = now;
+            measureStartCpuMs = Process.getElapsedCpuTime();
+            loops = 0;
+        }
+        else if (now - measureStartNanos >= MEASURE_INTERVAL_NANOS) {
+            long cpuMs = Process.getElapsedCpuTime();
+            double seconds = (now - measureStartNanos) / 1e9;
+            cpuLoad[state.ordinal()] = (cpuMs - measureStartCpuMs) / 1000.0 / seconds;
+            loopHz[state.ordinal()] = loops / seconds;
+            measureStartNanos = now;
+            measureStartCpuMs = cpuMs;
+            loops = 0;
+        }
+    }
+
+    /**
+     * Stop streaming for good. Once this returns the pipeline gets no more frames, so whatever
+     * it uses can be released. Call from the OpMode's way out, before closing the pipeline.
+     */
+    public synchronized void close() {
+        closed = true;
+        if (streamingWidth != 0) {
+            webcam.stopStreaming();
+            streamingWidth = 0;
+            streamingHeight = 0;
+        }
+    }
+
+    // Caller holds the lock
+    private void apply(State state) {
+        int i = state.ordinal();
+        throttle.setTargetFps(targetFps[i]);
+        if (widths[i] == streamingWidth && heights[i] == streamingHeight) {
+            return;
+        }
+        if (streamingWidth != 0) {
+            webcam.stopStreaming();
+        }
+        if (widths[i] > 0) {
+            webcam.startStreaming(widths[i], heights[i], rotation);
+        }
+        streamingWidth = widths[i];
+        streamingHeight = heights[i];
+        restarts[i]++;
+    }
+
+    public State getState() {
+        return requested;
+    }
+
+    /**
+     * @return CPU used by the whole robot controller process while in the state, in cores
+     */
+    public double getCpuLoad(State state) {
+        return cpuLoad[state.ordinal()];
+    }
+
+    /**
+     * @return how fast the OpMode loop ran while in the state
+     */
+    public double getLoopHz(State state) {
+        return loopHz[state.ordinal()];
+    }
+
+    /**
+     * @return how many times streaming was started, stopped or restarted, in total
+     */
+    public synchronized int getRestarts() {
+        int total = 0;
+        for (int count : restarts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @return how many times streaming was restarted to enter the state (stopped, for PAUSED)
+     */
+    public synchronized int getRestarts(State state) {
+        return restarts[state.ordinal()];
+    }
+
+    public long getFramesProcessed() {
+        return throttle.processed;
+    }
+
+    public long getFramesSkipped() {
+        return throttle.skipped;
+    }
+
+    /**
+     * Runs the wrapped pipeline at no more than the target fps and passes the other frames
+     * straight through to the viewport.
+     */
+    static class ThrottledPipeline extends OpenCvPipeline {
+        private final OpenCvPipeline pipeline;
+        private volatile long periodNanos = 0;
+        private long nextDueNanos = 0;
+        volatile long processed = 0;
+        volatile long skipped = 0;
+
+        ThrottledPipeline(OpenCvPipeline pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        void setTargetFps(double fps) {
+            periodNanos = fps > 0 ? (long) (1e9 / fps) : 0;
+        }
+
+        @Override
+        public void init(Mat input) {
+            pipeline.init(input);
+        }
+
+        @Override
+        public Mat processFrame(Mat input) {
+            long period = periodNanos;
+            if (period > 0) {
+                long now = System.nanoTime();
+                // A quarter period of slack so camera jitter doesn't make us skip a frame we wanted
+                if (now < nextDueNanos - period / 4) {
+                    skipped++;
+                    return input;
+                }
+                nextDueNanos = Math.max(nextDueNanos, now) + period;
+            }
+            processed++;
+            return pipeline.processFrame(input);
+        }
+
+        @Override
+        public void onViewportTapped() {
+            pipeline.onViewportTapped();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfFloat;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Works out Cr/Cb bounds for ContourPipeline from what the camera actually sees of the target.
+ * Over a few frames it accumulates Cr and Cb histograms of a YCrCb region known to contain the
+ * target, then takes a low and high percentile of each, widened by a margin. Y is left open.
+ *
+ * The result is saved through the {@link Store} so the next OpMode can start from it. On the
+ * robot that is a file in the settings folder (see {@link SettingsCalibrationStore}).
+ */
+public class ChromaCalibrator {
+    static final float[] RANGE = {0, 256};
+    static final int BINS = 256;
+
+    private final int framesNeeded;
+    private final double lowPercentile;
+    private final double highPercentile;
+    private final int margin;
+
+    private final Mat crHistogram = new Mat();
+    private final Mat cbHistogram = new Mat();
+    private final MatOfInt crChannel = new MatOfInt(1);
+    private final MatOfInt cbChannel = new MatOfInt(2);
+    private final MatOfInt histSize = new MatOfInt(BINS);
+    private final MatOfFloat ranges = new MatOfFloat(RANGE);
+    private final Mat noMask = new Mat();
+
+    /**
+     * Keeps the last calibration between OpModes.
+     */
+    public interface Store {
+        void save(Scalar lower, Scalar upper);
+
+        /**
+         * @return lower and upper bounds, or null if there are none
+         */
+        Scalar[] load();
+    }
+
+    private static volatile Store store;
+
+    private int frames = 0;
+    private volatile Scalar lower;
+    private volatile Scalar upper;
+
+    /**
+     * @param framesNeeded   frames to accumulate before the bounds are computed
+     * @param lowPercentile  percentile (0-100) of the target's Cr/Cb taken as the lower bound
+     * @param highPercentile percentile taken as the upper bound
+     * @param margin         added on both sides of the percentile bounds
+     */
+    public ChromaCalibrator(int framesNeeded, double lowPercentile, double highPercentile, int margin) {
+        this.framesNeeded = framesNeeded;
+        this.lowPercentile = lowPercentile;
+        this.highPercentile = highPercentile;
+        this.margin = margin;
+    }
+
+    public ChromaCalibrator(int framesNeeded) {
+        this(framesNeeded, 2, 98, 8);
+    }
+
+    /**
+     * Add one frame of the target region, already converted to YCrCb. Ignored once done.
+     */
+    public void accumulate(Mat yCrCbRegion) {
+        if (isDone()) {
+            return;
+        }
+        List<Mat> images = Collections.singletonList(yCrCbRegion);
+        boolean accumulate = frames > 0;
+        Imgproc.calcHist(images, crChannel, noMask, crHistogram, histSize, ranges, accumulate);
+        Imgproc.calcHist(images, cbChannel, noMask, cbHistogram, histSize, ranges, accumulate);
+        frames++;
+
+        if (frames >= framesNeeded) {
+            int crLow = clamp(percentile(crHistogram, lowPercentile) - margin);
+            int crHigh = clamp(percentile(crHistogram, highPercentile) + margin);
+            int cbLow = clamp(percentile(cbHistogram, lowPercentile) - margin);
+            int cbHigh = clamp(percentile(cbHistogram, highPercentile) + margin);
+            lower = new Scalar(0, crLow, cbLow);
+            upper = new Scalar(255, crHigh, cbHigh);
+        }
+    }
+
+    public boolean isDone() {
+        return upper != null;
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    public Scalar getLower() {
+        return lower;
+    }
+
+    public Scalar getUpper() {
+        return upper;
+    }
+
+    public void release() {
+        crHistogram.release();
+        cbHistogram.release();
+    }
+
+    /**
+     * Where {@link #save} and {@link #load} keep the bounds; with none set nothing is kept.
+     */
+    public static void setStore(Store store) {
+        ChromaCalibrator.store = store;
+    }
+
+    /**
+     * Save the bounds for the next OpMode.
+     */
+    public static void save(Scalar lower, Scalar upper) {
+        Store current = store;
+        if (current != null) {
+            current.save(lower, upper);
+        }
+    }
+
+    /**
+     * @return lower and upper bounds from the last saved calibration, or null if there is none
+     */
+    public static Scalar[] load() {
+        Store current = store;
+        return current != null ? current.load() : null;
+    }
+
+    private static int percentile(Mat histogram, double percentile) {
+        double total = 0;
+        for (int bin = 0; bin < BINS; bin++) {
+            total += histogram.get(bin, 0)[0];
+        }
+        double target = total * percentile / 100.0;
+        double seen = 0;
+        for (int bin = 0; bin < BINS; bin++) {
+            seen += histogram.get(bin, 0)[0];
+            if (seen >= target && seen > 0) {
+                return bin;
+            }
+        }
+        return BINS - 1;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
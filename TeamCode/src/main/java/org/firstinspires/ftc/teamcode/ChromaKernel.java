@@ -0,0 +1,99 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+/**
+ * RGB to YCrCb fused with what comes after it, in one pass over the frame. cvtColor writes a
+ * full 3 channel YCrCb Mat that inRange or extractChannel then reads back in full, only to keep
+ * one byte per pixel. This reads each RGB(A) pixel once and writes that one byte directly, either
+ * the inRange mask or the Cb channel. Working buffers are reused byte arrays.
+ *
+ * The conversion uses the same 14 bit fixed point coefficients and rounding as OpenCV's 8 bit
+ * RGB2YCrCb, so the results match cvtColor to within a rounding step.
+ */
+public class ChromaKernel {
+    // OpenCV's RGB2YCrCb coefficients, scaled by 2^14
+    private static final int SHIFT = 14;
+    private static final int ROUND = 1 << (SHIFT - 1);
+    private static final int Y_R = 4899;
+    private static final int Y_G = 9617;
+    private static final int Y_B = 1868;
+    private static final int CR = 11682;
+    private static final int CB = 9241;
+    private static final int DELTA = 128 << SHIFT;
+
+    private byte[] pixels = new byte[0];
+    private byte[] out = new byte[0];
+
+    /**
+     * Write 255 into mask wherever the RGB(A) input is inside the YCrCb bounds, 0 elsewhere, like
+     * cvtColor(COLOR_RGB2YCrCb) followed by inRange.
+     */
+    public void mask(Mat rgb, Scalar lowerYCrCb, Scalar upperYCrCb, Mat mask) {
+        int count = read(rgb);
+        int channels = rgb.channels();
+
+        // inRange compares against the double bounds; for whole values that is this
+        int yLow = (int) Math.ceil(lowerYCrCb.val[0]);
+        int yHigh = (int) Math.floor(upperYCrCb.val[0]);
+        int crLow = (int) Math.ceil(lowerYCrCb.val[1]);
+        int crHigh = (int) Math.floor(upperYCrCb.val[1]);
+        int cbLow = (int) Math.ceil(lowerYCrCb.val[2]);
+        int cbHigh = (int) Math.floor(upperYCrCb.val[2]);
+
+        for (int i = 0, p = 0; i < count; i++, p += channels) {
+            int r = pixels[p] & 0xFF;
+            int g = pixels[p + 1] & 0xFF;
+            int b = pixels[p + 2] & 0xFF;
+            int y = (r * Y_R + g * Y_G + b * Y_B + ROUND) >> SHIFT;
+            int cr = clamp(((r - y) * CR + DELTA + ROUND) >> SHIFT);
+            int cb = clamp(((b - y) * CB + DELTA + ROUND) >> SHIFT);
+            boolean inside = y >= yLow && y <= yHigh && cr >= crLow && cr <= crHigh
+                    && cb >= cbLow && cb <= cbHigh;
+            out[i] = (byte) (inside ? 255 : 0);
+        }
+        write(rgb, mask);
+    }
+
+    /**
+     * Write the Cb channel of the RGB(A) input, like cvtColor(COLOR_RGB2YCrCb) followed by
+     * extractChannel(2).
+     */
+    public void cb(Mat rgb, Mat cb) {
+        int count = read(rgb);
+        int channels = rgb.channels();
+
+        for (int i = 0, p = 0; i < count; i++, p += channels) {
+            int r = pixels[p] & 0xFF;
+            int g = pixels[p + 1] & 0xFF;
+            int b = pixels[p + 2] & 0xFF;
+            int y = (r * Y_R + g * Y_G + b * Y_B + ROUND) >> SHIFT;
+            out[i] = (byte) clamp(((b - y) * CB + DELTA + ROUND) >> SHIFT);
+        }
+        write(rgb, cb);
+    }
+
+    private int read(Mat rgb) {
+        int count = (int) rgb.total();
+        int size = count * rgb.channels();
+        if (pixels.length != size) {
+            pixels = new byte[size];
+        }
+        if (out.length != count) {
+            out = new byte[count];
+        }
+        rgb.get(0, 0, pixels);
+        return count;
+    }
+
+    private void write(Mat rgb, Mat dst) {
+        dst.create(rgb.rows(), rgb.cols(), CvType.CV_8UC1);
+        dst.put(0, 0, out);
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+}
@@ -0,0 +1,115 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+/**
+ * Thresholds an RGB frame against YCrCb bounds with one table lookup per pixel, instead of
+ * cvtColor into a full 3 channel YCrCb Mat followed by inRange.
+ *
+ * The table is indexed by the top bitsPerChannel bits of R, G and B (5 bits is 32K entries,
+ * 6 bits is 256K). Each entry holds the inRange result for the center of its RGB cell, so a pixel
+ * right on a bound can land on the other side of it. The table is rebuilt only when the bounds
+ * change.
+ */
+public class ColorLookupTable {
+    private final int bitsPerChannel;
+    private final int shift;
+    private final byte[] table;
+
+    private final double[] builtLower = new double[3];
+    private final double[] builtUpper = new double[3];
+    private boolean built = false;
+
+    private byte[] pixels = new byte[0];
+    private byte[] maskBytes = new byte[0];
+
+    public ColorLookupTable(int bitsPerChannel) {
+        if (bitsPerChannel < 5 || bitsPerChannel > 6) {
+            throw new IllegalArgumentException("Use 5 or 6 bits per channel, was " + bitsPerChannel);
+        }
+        this.bitsPerChannel = bitsPerChannel;
+        this.shift = 8 - bitsPerChannel;
+        this.table = new byte[1 << (3 * bitsPerChannel)];
+    }
+
+    public int getBitsPerChannel() {
+        return bitsPerChannel;
+    }
+
+    /**
+     * Rebuild the table if the bounds differ from the ones it was built for.
+     *
+     * @return true if the table was rebuilt
+     */
+    public boolean update(Scalar lowerYCrCb, Scalar upperYCrCb) {
+        if (built && sameBounds(lowerYCrCb, upperYCrCb)) {
+            return false;
+        }
+        for (int i = 0; i < 3; i++) {
+            builtLower[i] = lowerYCrCb.val[i];
+            builtUpper[i] = upperYCrCb.val[i];
+        }
+
+        int cells = 1 << bitsPerChannel;
+        double half = (1 << shift) / 2.0;
+        for (int r = 0; r < cells; r++) {
+            double red = (r << shift) + half;
+            for (int g = 0; g < cells; g++) {
+                double green = (g << shift) + half;
+                for (int b = 0; b < cells; b++) {
+                    double blue = (b << shift) + half;
+
+                    // Same conversion as Imgproc.COLOR_RGB2YCrCb for 8 bit images
+                    double y = 0.299 * red + 0.587 * green + 0.114 * blue;
+                    double cr = (red - y) * 0.713 + 128;
+                    double cb = (blue - y) * 0.564 + 128;
+
+                    boolean inside = inRange(Math.round(y), 0) && inRange(Math.round(cr), 1) && inRange(Math.round(cb), 2);
+                    table[(r << (2 * bitsPerChannel)) | (g << bitsPerChannel) | b] = (byte) (inside ? 255 : 0);
+                }
+            }
+        }
+        built = true;
+        return true;
+    }
+
+    /**
+     * Write 255 into mask wherever the RGB(A) input is inside the bounds, 0 elsewhere.
+     */
+    public void apply(Mat rgb, Mat mask) {
+        int channels = rgb.channels();
+        int count = (int) rgb.total();
+        if (pixels.length != count * channels) {
+            pixels = new byte[count * channels];
+        }
+        if (maskBytes.length != count) {
+            maskBytes = new byte[count];
+        }
+        rgb.get(0, 0, pixels);
+
+        for (int i = 0, p = 0; i < count; i++, p += channels) {
+            int r = (pixels[p] & 0xFF) >>> shift;
+            int g = (pixels[p + 1] & 0xFF) >>> shift;
+            int b = (pixels[p + 2] & 0xFF) >>> shift;
+            maskBytes[i] = table[(r << (2 * bitsPerChannel)) | (g << bitsPerChannel) | b];
+        }
+
+        mask.create(rgb.rows(), rgb.cols(), CvType.CV_8UC1);
+        mask.put(0, 0, maskBytes);
+    }
+
+    private boolean inRange(long value, int channel) {
+        return value >= builtLower[channel] && value <= builtUpper[channel];
+    }
+
+    private boolean sameBounds(Scalar lower, Scalar upper) {
+        for (int i = 0; i < 3; i++) {
+            if (lower.val[i] != builtLower[i] || upper.val[i] != builtUpper[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
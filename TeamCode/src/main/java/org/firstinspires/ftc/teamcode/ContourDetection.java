@@ -0,0 +1,96 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable result of one {@link ContourPipeline} frame. The pipeline publishes a new instance
+ * per frame, so every value read from the same instance belongs to the same frame.
+ */
+public final class ContourDetection {
+    /**
+     * What is published before the first frame: no rect, no frame and nothing measured.
+     */
+    public static final ContourDetection EMPTY = new ContourDetection(0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            Collections.<TrackedBlob>emptyList(), 0, 0, 0, 0);
+
+    public final int x;
+    public final int y;
+    public final int width;
+    public final int height;
+    public final double area;
+    public final double midpointX;
+    public final double midpointY;
+    public final int frameWidth;
+    public final int frameHeight;
+    public final long frameSequence;
+    public final long captureTimeNanos;     // estimated, see ContourPipeline.setCaptureLatencyMs
+    public final long pipelineStartNanos;
+    public final long pipelineEndNanos;     // when this detection was published
+    public final List<TrackedBlob> blobs;   // largest first, empty unless multi-target mode is on
+
+    // The largest rect inside the borders found in this frame alone, all 0 if there was none.
+    // x..height above are the pipeline's choice, which can hold on to an earlier frame's rect.
+    public final int measuredX;
+    public final int measuredY;
+    public final int measuredWidth;
+    public final int measuredHeight;
+
+    public ContourDetection(int x, int y, int width, int height, int frameWidth, int frameHeight,
+                            long frameSequence, long captureTimeNanos, long pipelineStartNanos,
+                            long pipelineEndNanos, List<TrackedBlob> blobs,
+                            int measuredX, int measuredY, int measuredWidth, int measuredHeight) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.area = (double) width * height;
+        this.midpointX = x + (width / 2.0);
+        this.midpointY = y + (height / 2.0);
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        this.frameSequence = frameSequence;
+        this.captureTimeNanos = captureTimeNanos;
+        this.pipelineStartNanos = pipelineStartNanos;
+        this.pipelineEndNanos = pipelineEndNanos;
+        this.blobs = blobs;
+        this.measuredX = measuredX;
+        this.measuredY = measuredY;
+        this.measuredWidth = measuredWidth;
+        this.measuredHeight = measuredHeight;
+    }
+
+    public Rect getRect() {
+        return new Rect(x, y, width, height);
+    }
+
+    public Point getMidpoint() {
+        return new Point(midpointX, midpointY);
+    }
+
+    /**
+     * @return whether anything was measured in this frame, see {@link #measuredX}
+     */
+    public boolean hasMeasurement() {
+        return measuredWidth > 0 && measuredHeight > 0;
+    }
+
+    /**
+     * @return the tracked blob with the given id in this frame, or null if it was not seen
+     */
+    public TrackedBlob getBlob(int id) {
+        for (int i = 0; i < blobs.size(); i++) {
+            if (blobs.get(i).id == id) {
+                return blobs.get(i);
+            }
+        }
+        return null;
+    }
+
+    public double getAspectRatio() {
+        return area / (frameHeight * frameWidth);
+    }
+}
@@ -3,21 +3,39 @@ package org.firstinspires.ftc.teamcode;
 import org.opencv.core.Core;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfPoint;
-import org.opencv.core.MatOfPoint2f;
 import org.opencv.core.Point;
 import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
-import org.openftc.easyopencv.OpenCvPipeline;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 // Credits to team 7303 RoboAvatars, adjusted by team 3954 Pink to the Future
 
-public class ContourPipeline extends OpenCvPipeline {
-    Scalar HOT_PINK = new Scalar(196, 23, 112);
+public class ContourPipeline extends PipelinedPipeline<ContourPipeline.FrameBuffers> {
+    static final Scalar HOT_PINK = new Scalar(196, 23, 112);
+    static final Scalar CONTOUR_COLOR = new Scalar(255, 0, 0);
+    static final Scalar RECT_COLOR = new Scalar(0, 255, 0);
+    static final Scalar TEXT_COLOR = new Scalar(255, 255, 255);
+    static final Size BLUR_SIZE = new Size(5.0, 15.0);
+    static final Size SCALE_BY_FACTOR = new Size();
+    static final int MIN_CONTOUR_POINTS = 15;
+
+    // Stages recorded on the stage timer
+    static final int RESIZE = 0;
+    static final int CVT_COLOR = 1;
+    static final int IN_RANGE = 2;
+    static final int MORPH_OPEN = 3;
+    static final int MORPH_CLOSE = 4;
+    static final int BLUR = 5;
+    static final int STRIPS = 6;
+    static final int FIND_CONTOURS = 7;
+    static final int SELECT = 8;
+    static final int LOOKUP = 9;
+    static final int FUSED_CHROMA = 10;
 
     // Pink, the default color                         Y      Cr     Cb    (Do not change Y)
     public static Scalar scalarLowerYCrCb = new Scalar(0.0, 150.0, 120.0);
@@ -44,25 +62,236 @@ public class ContourPipeline extends OpenCvPipeline {
     private int loopCounter = 0;
     private int pLoopCounter = 0;
 
-    private Mat mat = new Mat();
-    private Mat processed = new Mat();
-    private Mat output = new Mat();
+    // The native buffers processFrame needs are allocated once up front so a match does not
+    // leak native memory. reallocationCount goes up whenever one of them has to be created again;
+    // after the first frame it should stay put. Java heap allocation can't get to zero: the
+    // OpenCV bindings return a Rect and a MatOfPoint per contour, and every frame publishes a new
+    // ContourDetection. PipelineBench's checkAllocation holds both to a per-frame budget.
+    private final Mat openKernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(3, 3));
+    private final Mat closeKernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(3, 3));
+    private final Rect borderRect = new Rect();
+    private final Rect overlayRect = new Rect();
+    private final Point textOrigin = new Point();
+    private final StringBuilder text = new StringBuilder();
+    private volatile long reallocationCount = 0;
+
+    // When cropping, every stage runs on a submat of the area inside the borders instead of the
+    // whole frame. The submat header is cached against the input Mat that the camera hands us.
+    private volatile boolean cropToBorders = false;
+    private final Rect roiRect = new Rect();
+    private final Point roiOffset = new Point();
+    private Mat roi;
+    private long roiSource;
+
+    // Pyramid mode thresholds and finds contours on a 1/pyramidScale copy of the frame, then
+    // refines only the winning rect against the full resolution source.
+    private volatile int pyramidScale = 1;
+    private final Mat refineYCrCb = new Mat();
+    private final Mat refineMask = new Mat();
+    private final Rect refineRect = new Rect();
 
     private Rect maxRect = new Rect(600,1,1,1);
-    private Rect rect = new Rect(600,1,1,1);
+    private final Rect measuredRect = new Rect();  // largest in-border rect of the current frame only
 
     private double maxArea = 0;
-    private boolean first = false;
+    // Size of the frame the sticky rect above was measured in, so a new resolution starts over
+    private int selectWidth;
+    private int selectHeight;
 
-    private final Object sync = new Object();
+    // Parallel mode splits segmentation into horizontal strips run on a ForkJoin pool
+    private volatile StripSegmenter stripSegmenter;
+    private volatile StripSegmenter pendingRelease;  // swapped out, freed on the camera thread
+
+    // Lookup table mode replaces cvtColor + inRange with one RGB -> mask table lookup per pixel
+    private volatile ColorLookupTable lookupTable;
+
+    // Fused mode computes YCrCb and the inRange mask in one pass without the 3 channel Mat
+    private volatile boolean fusedChroma = false;
+    private final ChromaKernel chromaKernel = new ChromaKernel();
+
+    // Auto calibration: Cr/Cb histograms of a target region over the first few frames
+    private volatile ChromaCalibrator calibrator;
+    private volatile double[] calibrationRegion;
+    private final Mat calibrationYCrCb = new Mat();
+
+    // Contours enclosing fewer pixels than this (in full-frame units) are ignored, 0 to skip
+    private volatile double minContourArea = 0;
+
+    // Multi-target mode: the N largest blobs inside the borders, with ids kept across frames
+    private volatile BlobTracker blobTracker;
+
+    // EasyOpenCV doesn't hand pipelines the sensor timestamp, so capture time is estimated as
+    // this long before the frame reached us
+    private volatile long captureLatencyNanos = 0;
+
+    // Written only by the contour stage, read by the OpMode without locking
+    private volatile ContourDetection detection = ContourDetection.EMPTY;
+    private long frameSequence = 0;
+
+    /**
+     * What one frame carries from the conversion stage to the contour stage. There are two of
+     * these so the stages can work on consecutive frames at the same time.
+     */
+    static class FrameBuffers {
+        final Mat yCrCb = new Mat();
+        final Mat small = new Mat();
+        final Mat processed = new Mat();
+        final Mat frame = new Mat();       // copy of the input, only when refining later
+        final Mat hierarchy = new Mat();
+        final List<MatOfPoint> contours = new ArrayList<>();
+        final Point contourOffset = new Point();
+
+        Mat mask;                          // processed, or the strip segmenter's mask
+        Mat refineSource;                  // full resolution frame for pyramid refinement
+        long captureTimeNanos;
+        long pipelineStartNanos;
+        int frameWidth;
+        int frameHeight;
+        int scale;
+        int offsetX;
+        int offsetY;
+        boolean contoursInFrameCoordinates;
+    }
 
     public ContourPipeline(double borderLeftX, double borderRightX, double borderTopY, double borderBottomY) {
+        super(new FrameBuffers(), new FrameBuffers(),
+                "resize", "cvtColor", "inRange", "open", "close", "blur", "strips", "findContours", "select", "lookup", "fusedChroma");
         this.borderLeftX = borderLeftX;
         this.borderRightX = borderRightX;
         this.borderTopY = borderTopY;
         this.borderBottomY = borderBottomY;
     }
 
+    public ContourPipeline(double borderLeftX, double borderRightX, double borderTopY, double borderBottomY, boolean cropToBorders) {
+        this(borderLeftX, borderRightX, borderTopY, borderBottomY);
+        this.cropToBorders = cropToBorders;
+    }
+
+    /**
+     * Only process the part of the frame inside the borders. Rects are still reported in
+     * full-frame coordinates.
+     */
+    public void setCropToBorders(boolean cropToBorders) {
+        this.cropToBorders = cropToBorders;
+    }
+
+    public boolean isCropToBorders() {
+        return cropToBorders;
+    }
+
+    /**
+     * Detect on an image downscaled by 1, 2 or 4 and refine the winning rect at full resolution.
+     * A scale of 1 turns pyramid mode off.
+     */
+    public void setPyramidScale(int pyramidScale) {
+        if (pyramidScale != 1 && pyramidScale != 2 && pyramidScale != 4) {
+            throw new IllegalArgumentException("Pyramid scale must be 1, 2 or 4, was " + pyramidScale);
+        }
+        this.pyramidScale = pyramidScale;
+    }
+
+    public int getPyramidScale() {
+        return pyramidScale;
+    }
+
+    /**
+     * Run the color threshold, morphology and blur on this many horizontal strips in parallel.
+     * 1 goes back to doing it all on the camera thread.
+     */
+    public void setParallelStrips(int workers) {
+        StripSegmenter old = stripSegmenter;
+        stripSegmenter = workers > 1 ? new StripSegmenter(workers, openKernel, closeKernel, BLUR_SIZE) : null;
+        if (old != null) {
+            pendingRelease = old;
+        }
+    }
+
+    public int getParallelStrips() {
+        StripSegmenter segmenter = stripSegmenter;
+        return segmenter != null ? segmenter.getStrips() : 1;
+    }
+
+    /**
+     * Threshold with a precomputed RGB lookup table quantized to bitsPerChannel (5 or 6) bits
+     * instead of converting to YCrCb. The table follows the configured bounds. 0 turns it off.
+     * Not used while parallel strips are on.
+     */
+    public void setColorLookupTable(int bitsPerChannel) {
+        lookupTable = bitsPerChannel > 0 ? new ColorLookupTable(bitsPerChannel) : null;
+    }
+
+    /**
+     * Threshold with a single pass kernel that converts each pixel to YCrCb and checks the
+     * bounds without writing the YCrCb Mat. Exact unlike the lookup table, which wins if both
+     * are on. Not used while parallel strips are on.
+     */
+    public void setFusedChroma(boolean fusedChroma) {
+        this.fusedChroma = fusedChroma;
+    }
+
+    /**
+     * Derive the Cr/Cb bounds from the next frames. The region, given as fractions of the frame,
+     * should be filled by the target. Once enough frames are in the bounds are applied and saved
+     * for the next OpMode (see {@link #useSavedCalibration()}).
+     */
+    public void startAutoCalibration(double left, double top, double right, double bottom, int frames) {
+        calibrationRegion = new double[]{left, top, right, bottom};
+        calibrator = new ChromaCalibrator(frames);
+    }
+
+    public boolean isCalibrating() {
+        ChromaCalibrator current = calibrator;
+        return current != null && !current.isDone();
+    }
+
+    /**
+     * @return the running or last calibration, or null if none was started
+     */
+    public ChromaCalibrator getCalibrator() {
+        return calibrator;
+    }
+
+    /**
+     * Apply the bounds saved by the last auto calibration, if there are any.
+     *
+     * @return true if saved bounds were applied
+     */
+    public boolean useSavedCalibration() {
+        Scalar[] saved = ChromaCalibrator.load();
+        if (saved == null) {
+            return false;
+        }
+        configureScalarLower(saved[0].val[0], saved[0].val[1], saved[0].val[2]);
+        configureScalarUpper(saved[1].val[0], saved[1].val[1], saved[1].val[2]);
+        return true;
+    }
+
+    /**
+     * Ignore contours that enclose less than this many pixels of the full frame. The check runs
+     * on the native contour, so it is cheap compared to bounding and selecting. 0 turns it off.
+     */
+    public void setMinContourArea(double minContourArea) {
+        this.minContourArea = minContourArea;
+    }
+
+    /**
+     * Also report the maxTargets largest blobs inside the borders each frame, each with a track
+     * id that follows it across frames. A blob keeps its id when its midpoint moved less than
+     * maxMatchDistance pixels since the last frame. Pass 0 targets to turn the mode off.
+     */
+    public void setMultiTarget(int maxTargets, double maxMatchDistance) {
+        blobTracker = maxTargets > 0 ? new BlobTracker(maxTargets, maxMatchDistance) : null;
+    }
+
+    /**
+     * How long before reaching the pipeline a frame was captured (exposure, USB transfer and
+     * the camera's own queue), measured e.g. by filming a millisecond clock. Detections are
+     * stamped with a capture time this far ahead of the pipeline start.
+     */
+    public void setCaptureLatencyMs(double captureLatencyMs) {
+        this.captureLatencyNanos = (long) (captureLatencyMs * 1e6);
+    }
+
     public void configureScalarLower(double y, double cr, double cb) {
         scalarLowerYCrCb = new Scalar(y, cr, cb);
     }
@@ -80,138 +309,415 @@ public class ContourPipeline extends OpenCvPipeline {
     }
 
     @Override
-    public Mat processFrame(Mat input) {
-        CAMERA_WIDTH = input.width();
-        CAMERA_HEIGHT = input.height();
+    protected void convert(Mat input, FrameBuffers buffers, boolean deferred) {
+        buffers.pipelineStartNanos = System.nanoTime();
+        buffers.captureTimeNanos = buffers.pipelineStartNanos - captureLatencyNanos;
+        if (input.width() != CAMERA_WIDTH || input.height() != CAMERA_HEIGHT) {
+            CAMERA_WIDTH = input.width();
+            CAMERA_HEIGHT = input.height();
+            updateBorderRect();
+            reallocationCount++;
+        }
+        buffers.frameWidth = CAMERA_WIDTH;
+        buffers.frameHeight = CAMERA_HEIGHT;
+        try {
+            if (isCalibrating()) {
+                calibrate(input);
+            }
+
+            long t = stageTimer.now();
+            boolean crop = cropToBorders;
+            Mat source = crop ? roiOf(input) : input;
+
+            int scale = pyramidScale;
+            Mat detect = source;
+            if (scale > 1) {
+                Imgproc.resize(source, buffers.small, SCALE_BY_FACTOR, 1.0 / scale, 1.0 / scale, Imgproc.INTER_AREA);
+                detect = buffers.small;
+                t = stageTimer.record(RESIZE, t);
+
+                // The contour stage refines against the full frame, which is gone once
+                // processFrame returns
+                if (deferred) {
+                    input.copyTo(buffers.frame);
+                    buffers.refineSource = buffers.frame;
+                } else {
+                    buffers.refineSource = input;
+                }
+            }
+
+            // At full scale findContours' offset maps contours found in the crop back to
+            // full-frame coordinates. Downscaled contours are mapped back by hand.
+            buffers.scale = scale;
+            buffers.contourOffset.x = crop && scale == 1 ? roiOffset.x : 0;
+            buffers.contourOffset.y = crop && scale == 1 ? roiOffset.y : 0;
+            buffers.offsetX = crop && scale > 1 ? roiRect.x : 0;
+            buffers.offsetY = crop && scale > 1 ? roiRect.y : 0;
+
+            StripSegmenter old = pendingRelease;
+            if (old != null) {
+                pendingRelease = null;
+                old.release();
+            }
+            StripSegmenter segmenter = stripSegmenter;
+            t = stageTimer.now();
+            if (segmenter != null) {
+                Mat stripMask = segmenter.segment(detect, scalarLowerYCrCb, scalarUpperYCrCb);
+                if (deferred) {
+                    // The segmenter reuses its mask for the next frame
+                    stripMask.copyTo(buffers.processed);
+                    buffers.mask = buffers.processed;
+                } else {
+                    buffers.mask = stripMask;
+                }
+                stageTimer.record(STRIPS, t);
+            } else {
+                Mat processed = buffers.processed;
+                ColorLookupTable table = lookupTable;
+                if (table != null) {
+                    // Only rebuilds when the bounds have changed
+                    table.update(scalarLowerYCrCb, scalarUpperYCrCb);
+                    table.apply(detect, processed);
+                    t = stageTimer.record(LOOKUP, t);
+                } else if (fusedChroma) {
+                    chromaKernel.mask(detect, scalarLowerYCrCb, scalarUpperYCrCb, processed);
+                    t = stageTimer.record(FUSED_CHROMA, t);
+                } else {
+                    // Process Image
+                    Imgproc.cvtColor(detect, buffers.yCrCb, Imgproc.COLOR_RGB2YCrCb);
+                    t = stageTimer.record(CVT_COLOR, t);
+                    Core.inRange(buffers.yCrCb, scalarLowerYCrCb, scalarUpperYCrCb, processed);
+                    t = stageTimer.record(IN_RANGE, t);
+                }
+                // Core.bitwise_and(input, input, output, processed);
+
+                // Remove Noise
+                Imgproc.morphologyEx(processed, processed, Imgproc.MORPH_OPEN, openKernel);
+                t = stageTimer.record(MORPH_OPEN, t);
+                Imgproc.morphologyEx(processed, processed, Imgproc.MORPH_CLOSE, closeKernel);
+                t = stageTimer.record(MORPH_CLOSE, t);
+                // GaussianBlur
+                Imgproc.GaussianBlur(processed, processed, BLUR_SIZE, 0.00);
+                stageTimer.record(BLUR, t);
+                buffers.mask = processed;
+            }
+        } catch (Exception e) {
+            debug = e;
+            error = true;
+            buffers.mask = null;
+        }
+    }
+
+    @Override
+    protected void finish(FrameBuffers buffers) {
         try {
-            // Process Image
-            Imgproc.cvtColor(input, mat, Imgproc.COLOR_RGB2YCrCb);
-            Core.inRange(mat, scalarLowerYCrCb, scalarUpperYCrCb, processed);
-            // Core.bitwise_and(input, input, output, processed);
-
-            // Remove Noise
-            Imgproc.morphologyEx(processed, processed, Imgproc.MORPH_OPEN, new Mat());
-            Imgproc.morphologyEx(processed, processed, Imgproc.MORPH_CLOSE, new Mat());
-            // GaussianBlur
-            Imgproc.GaussianBlur(processed, processed, new Size(5.0, 15.0), 0.00);
+            if (buffers.mask == null) {
+                return;
+            }
+            int scale = buffers.scale;
+            int frameWidth = buffers.frameWidth;
+            int frameHeight = buffers.frameHeight;
+            List<MatOfPoint> contours = buffers.contours;
+
             // Find Contours
-            List<MatOfPoint> contours = new ArrayList<>();
-            Imgproc.findContours(processed, contours, new Mat(), Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
-
-            // Draw Contours
-            Imgproc.drawContours(input, contours, -1, new Scalar(255, 0, 0));
-
-            //lock this up to prevent errors when outside threads access the max rect property.
-            synchronized (sync) {
-                // Loop Through Contours
-                for (MatOfPoint contour : contours) {
-                    Point[] contourArray = contour.toArray();
-
-                    // Bound Rectangle if Contour is Large Enough
-                    if (contourArray.length >= 15) {
-                        MatOfPoint2f areaPoints = new MatOfPoint2f(contourArray);
-                        Rect rect = Imgproc.boundingRect(areaPoints);
-
-                        // if rectangle is larger than previous cycle or if rectangle is not larger than previous 6 cycles > then replace
-
-                        if (rect.area() > maxArea
-                                && rect.x > (borderLeftX * CAMERA_WIDTH) && rect.x + rect.width < CAMERA_WIDTH - (borderRightX * CAMERA_WIDTH)
-                                && rect.y > (borderTopY * CAMERA_HEIGHT) && rect.y + rect.height < CAMERA_HEIGHT - (borderBottomY * CAMERA_HEIGHT)
-                                || loopCounter - pLoopCounter > 6) {
-                            maxArea = rect.area();
-                            maxRect = rect;
-                            pLoopCounter++;
-                            loopCounter = pLoopCounter;
-                            first = true;
-                        }
-                        areaPoints.release();
+            long t = stageTimer.now();
+            releaseContours(contours);
+            Imgproc.findContours(buffers.mask, contours, buffers.hierarchy, Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE,
+                    buffers.contourOffset);
+            t = stageTimer.record(FIND_CONTOURS, t);
+            buffers.contoursInFrameCoordinates = scale == 1;
+
+            // Only one thread at a time runs this stage; readers see the published snapshot.
+            if (frameWidth != selectWidth || frameHeight != selectHeight) {
+                // The sticky rect and its area are in the old frame's pixels
+                selectWidth = frameWidth;
+                selectHeight = frameHeight;
+                setMaxRect(0, 0, 0, 0);
+                maxArea = 0;
+                loopCounter = 0;
+                pLoopCounter = 0;
+            }
+            boolean replaced = false;
+            measuredRect.x = measuredRect.y = measuredRect.width = measuredRect.height = 0;
+            BlobTracker tracker = blobTracker;
+            // Loop Through Contours
+            for (MatOfPoint contour : contours) {
+                // Bound Rectangle if Contour is Large Enough. Everything here reads the native
+                // contour directly; nothing is copied into Java Point objects.
+                if (contour.rows() >= MIN_CONTOUR_POINTS / scale
+                        && (minContourArea <= 0 || Imgproc.contourArea(contour) * scale * scale >= minContourArea)) {
+                    Rect rect = Imgproc.boundingRect(contour);
+                    rect.x = rect.x * scale + buffers.offsetX;
+                    rect.y = rect.y * scale + buffers.offsetY;
+                    rect.width *= scale;
+                    rect.height *= scale;
+
+                    // if rectangle is larger than previous cycle or if rectangle is not larger than previous 6 cycles > then replace
+
+                    boolean insideBorders = insideBorders(rect, frameWidth, frameHeight,
+                            borderLeftX, borderRightX, borderTopY, borderBottomY);
+                    if (tracker != null && insideBorders) {
+                        tracker.offer(rect.x, rect.y, rect.width, rect.height);
+                    }
+                    if (insideBorders && rect.area() > measuredRect.area()) {
+                        measuredRect.x = rect.x;
+                        measuredRect.y = rect.y;
+                        measuredRect.width = rect.width;
+                        measuredRect.height = rect.height;
+                    }
+
+                    if (rect.area() > maxArea && insideBorders
+                            || loopCounter - pLoopCounter > 6) {
+                        maxArea = rect.area();
+                        setMaxRect(rect.x, rect.y, rect.width, rect.height);
+                        pLoopCounter++;
+                        loopCounter = pLoopCounter;
+                        replaced = true;
                     }
-                    contour.release();
                 }
-                if (contours.isEmpty()) {
-                    maxRect = new Rect();
+            }
+            if (contours.isEmpty()) {
+                setMaxRect(0, 0, 0, 0);
+            } else if (replaced && scale > 1) {
+                // When this frame's measurement is the new choice, it gets the refined rect too
+                boolean measuredIsMax = measuredRect.equals(maxRect);
+                refineMaxRect(buffers.refineSource, scale, frameWidth, frameHeight);
+                if (measuredIsMax) {
+                    measuredRect.x = maxRect.x;
+                    measuredRect.y = maxRect.y;
+                    measuredRect.width = maxRect.width;
+                    measuredRect.height = maxRect.height;
                 }
             }
+            detection = new ContourDetection(maxRect.x, maxRect.y, maxRect.width, maxRect.height,
+                    frameWidth, frameHeight, ++frameSequence, buffers.captureTimeNanos,
+                    buffers.pipelineStartNanos, System.nanoTime(),
+                    tracker != null ? tracker.update() : Collections.<TrackedBlob>emptyList(),
+                    measuredRect.x, measuredRect.y, measuredRect.width, measuredRect.height);
+            stageTimer.record(SELECT, t);
+
+            loopCounter++;
+        } catch (Exception e) {
+            debug = e;
+            error = true;
+        }
+    }
+
+    @Override
+    protected void drawOverlay(Mat input, Mat output) {
+        try {
+            ContourDetection published = detection;
+            FrameBuffers buffers = getCompletedBuffers();
+
+            // Draw Contours (only meaningful when they are in full-frame coordinates)
+            if (buffers != null && buffers.contoursInFrameCoordinates) {
+                Imgproc.drawContours(input, buffers.contours, -1, CONTOUR_COLOR);
+            }
             // Draw Rectangles If Area Is At Least 500
-            if (first && maxRect.area() > 500) {
-                Imgproc.rectangle(input, maxRect, new Scalar(0, 255, 0), 2);
+            if (published.area > 500) {
+                overlayRect.x = published.x;
+                overlayRect.y = published.y;
+                overlayRect.width = published.width;
+                overlayRect.height = published.height;
+                Imgproc.rectangle(input, overlayRect, RECT_COLOR, 2);
             }
             // Draw Borders
-            Imgproc.rectangle(input, new Rect(
-                    (int) (borderLeftX * CAMERA_WIDTH),
-                    (int) (borderTopY * CAMERA_HEIGHT),
-                    (int) (CAMERA_WIDTH - (borderRightX * CAMERA_WIDTH) - (borderLeftX * CAMERA_HEIGHT)),
-                    (int) (CAMERA_HEIGHT - (borderBottomY * CAMERA_WIDTH) - (borderTopY * CAMERA_HEIGHT))
-            ), HOT_PINK, 2);
+            Imgproc.rectangle(input, borderRect, HOT_PINK, 2);
 
             // Display Data
-            Imgproc.putText(input, "Area: " + getRectArea() + " Midpoint: " + getRectMidpointXY().x + " , " + getRectMidpointXY().y, new Point(5, CAMERA_HEIGHT - 5), 0, 0.6, new Scalar(255, 255, 255), 2);
-
-            loopCounter++;
+            text.setLength(0);
+            text.append("Area: ").append(published.area)
+                    .append(" Midpoint: ").append(published.midpointX)
+                    .append(" , ").append(published.midpointY);
+            Imgproc.putText(input, text.toString(), textOrigin, 0, 0.6, TEXT_COLOR, 2);
         } catch (Exception e) {
             debug = e;
             error = true;
         }
-        return input;
     }
+
+    /**
+     * Number of times processFrame had to (re)create one of its native buffers. Goes up on the
+     * first frame (and whenever the stream resolution changes) and should stay flat after that.
+     * Java heap allocation per frame is not zero, but PipelineBench's checkAllocation asserts a
+     * per-frame budget for it.
+     */
+    public long getBufferReallocationCount() {
+        return reallocationCount;
+    }
+
+    public void resetBufferReallocationCount() {
+        reallocationCount = 0;
+    }
+
+    private void calibrate(Mat input) {
+        ChromaCalibrator current = calibrator;
+        double[] region = calibrationRegion;
+        int left = (int) (region[0] * CAMERA_WIDTH);
+        int top = (int) (region[1] * CAMERA_HEIGHT);
+        int right = (int) (region[2] * CAMERA_WIDTH);
+        int bottom = (int) (region[3] * CAMERA_HEIGHT);
+        if (right <= left || bottom <= top) {
+            return;
+        }
+
+        Mat target = input.submat(top, bottom, left, right);
+        try {
+            Imgproc.cvtColor(target, calibrationYCrCb, Imgproc.COLOR_RGB2YCrCb);
+            current.accumulate(calibrationYCrCb);
+        } finally {
+            target.release();
+        }
+
+        if (current.isDone()) {
+            Scalar lower = current.getLower();
+            Scalar upper = current.getUpper();
+            configureScalarLower(lower.val[0], lower.val[1], lower.val[2]);
+            configureScalarUpper(upper.val[0], upper.val[1], upper.val[2]);
+            ChromaCalibrator.save(lower, upper);
+            current.release();
+        }
+    }
+
+    // Re-threshold just the (padded) winning rect at full resolution so the reported rect is not
+    // quantized to the pyramid scale.
+    private void refineMaxRect(Mat input, int scale, int frameWidth, int frameHeight) {
+        refineRect.x = Math.max(0, maxRect.x - scale);
+        refineRect.y = Math.max(0, maxRect.y - scale);
+        refineRect.width = Math.min(frameWidth, maxRect.x + maxRect.width + scale) - refineRect.x;
+        refineRect.height = Math.min(frameHeight, maxRect.y + maxRect.height + scale) - refineRect.y;
+        if (refineRect.width <= 0 || refineRect.height <= 0) {
+            return;
+        }
+
+        // Only a header over the input's pixels, released straight away
+        Mat window = input.submat(refineRect);
+        try {
+            Imgproc.cvtColor(window, refineYCrCb, Imgproc.COLOR_RGB2YCrCb);
+            Core.inRange(refineYCrCb, scalarLowerYCrCb, scalarUpperYCrCb, refineMask);
+            // Same clean up as the coarse mask, or stray noise pixels in the padding would
+            // stretch the rect past what was detected
+            Imgproc.morphologyEx(refineMask, refineMask, Imgproc.MORPH_OPEN, openKernel);
+            Imgproc.morphologyEx(refineMask, refineMask, Imgproc.MORPH_CLOSE, closeKernel);
+            Imgproc.GaussianBlur(refineMask, refineMask, BLUR_SIZE, 0.00);
+            Rect refined = Imgproc.boundingRect(refineMask);
+            if (refined.area() > 0) {
+                setMaxRect(refineRect.x + refined.x, refineRect.y + refined.y, refined.width, refined.height);
+                maxArea = maxRect.area();
+            }
+        } finally {
+            window.release();
+        }
+    }
+
+    private Mat roiOf(Mat input) {
+        if (roi == null || roiSource != input.nativeObj) {
+            if (roi != null) {
+                roi.release();
+            }
+            roi = input.submat(roiRect);
+            roiSource = input.nativeObj;
+            reallocationCount++;
+        }
+        return roi;
+    }
+
+    private void setMaxRect(int x, int y, int width, int height) {
+        maxRect.x = x;
+        maxRect.y = y;
+        maxRect.width = width;
+        maxRect.height = height;
+    }
+
+    /**
+     * @return whether rect lies inside the borders, which are fractions of the frame size
+     */
+    static boolean insideBorders(Rect rect, int frameWidth, int frameHeight,
+                                 double borderLeftX, double borderRightX, double borderTopY, double borderBottomY) {
+        return rect.x > (borderLeftX * frameWidth) && rect.x + rect.width < frameWidth - (borderRightX * frameWidth)
+                && rect.y > (borderTopY * frameHeight) && rect.y + rect.height < frameHeight - (borderBottomY * frameHeight);
+    }
+
+    private void updateBorderRect() {
+        borderRect.x = (int) (borderLeftX * CAMERA_WIDTH);
+        borderRect.y = (int) (borderTopY * CAMERA_HEIGHT);
+        borderRect.width = (int) (CAMERA_WIDTH - (borderRightX * CAMERA_WIDTH) - (borderLeftX * CAMERA_HEIGHT));
+        borderRect.height = (int) (CAMERA_HEIGHT - (borderBottomY * CAMERA_WIDTH) - (borderTopY * CAMERA_HEIGHT));
+        int left = (int) Math.ceil(borderLeftX * CAMERA_WIDTH);
+        int top = (int) Math.ceil(borderTopY * CAMERA_HEIGHT);
+        int right = (int) Math.floor(CAMERA_WIDTH - (borderRightX * CAMERA_WIDTH));
+        int bottom = (int) Math.floor(CAMERA_HEIGHT - (borderBottomY * CAMERA_HEIGHT));
+        roiRect.x = left;
+        roiRect.y = top;
+        roiRect.width = Math.max(1, right - left);
+        roiRect.height = Math.max(1, bottom - top);
+        roiOffset.x = left;
+        roiOffset.y = top;
+        if (roi != null) {
+            roi.release();
+            roi = null;
+        }
+
+        textOrigin.x = 5;
+        textOrigin.y = CAMERA_HEIGHT - 5;
+    }
+
+    // findContours hands back a fresh MatOfPoint per contour; free the previous frame's
+    // native memory before they are replaced.
+    private static void releaseContours(List<MatOfPoint> contours) {
+        for (MatOfPoint contour : contours) {
+            contour.release();
+        }
+        contours.clear();
+    }
+
     /*
-    Synchronize these operations as the user code could be incorrect otherwise, i.e a property is read
-    while the same rectangle is being processed in the pipeline, leading to some values being not
-    synced.
+    Each getter reads the latest published snapshot once, so the values it combines always come
+    from the same frame. Callers that need several values from one frame should use
+    getDetection() and read them from the returned snapshot.
      */
 
+    public ContourDetection getDetection() {
+        return detection;
+    }
 
     public int getRectHeight() {
-        synchronized (sync) {
-            return maxRect.height;
-        }
+        return detection.height;
     }
 
     public int getRectWidth() {
-        synchronized (sync) {
-            return maxRect.width;
-        }
+        return detection.width;
     }
 
     public int getRectX() {
-        synchronized (sync) {
-            return maxRect.x;
-        }
+        return detection.x;
     }
 
     public int getRectY() {
-        synchronized (sync) {
-            return maxRect.y;
-        }
+        return detection.y;
     }
 
     public double getRectMidpointX() {
-        synchronized (sync) {
-            return getRectX() + (getRectWidth() / 2.0);
-        }
+        return detection.midpointX;
     }
 
     public double getRectMidpointY() {
-        synchronized (sync) {
-            return getRectY() + (getRectHeight() / 2.0);
-        }
+        return detection.midpointY;
     }
 
     public Point getRectMidpointXY() {
-        synchronized (sync) {
-            return new Point(getRectMidpointX(), getRectMidpointY());
-        }
+        return detection.getMidpoint();
     }
 
     public double getAspectRatio() {
-        synchronized (sync) {
-            return getRectArea() / (CAMERA_HEIGHT * CAMERA_WIDTH);
-        }
+        return detection.getAspectRatio();
     }
 
     public double getRectArea() {
-        synchronized (sync) {
-            return maxRect.area();
-        }
+        return detection.area;
+    }
+
+    public List<TrackedBlob> getBlobs() {
+        return detection.blobs;
     }
-}
\ No newline at end of file
+}
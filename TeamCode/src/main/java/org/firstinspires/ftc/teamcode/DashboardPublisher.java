@@ -0,0 +1,34 @@
+package org.firstinspires.ftc.teamcode;
+
+import android.content.Context;
+
+import com.acmerobotics.dashboard.FtcDashboard;
+import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
+
+import org.firstinspires.ftc.ftccommon.external.OnCreate;
+
+import java.util.Map;
+
+/**
+ * Sends {@link StageTimer} percentiles to FtcDashboard. Installed when the Robot Controller app
+ * starts, so the pipelines themselves never touch the dashboard and also build off the robot.
+ */
+public class DashboardPublisher implements StageTimer.Publisher {
+    @OnCreate
+    public static void install(Context context) {
+        StageTimer.setPublisher(new DashboardPublisher());
+    }
+
+    @Override
+    public void publish(Map<String, Double> values) {
+        FtcDashboard dashboard = FtcDashboard.getInstance();
+        if (dashboard == null) {
+            return;
+        }
+        TelemetryPacket packet = new TelemetryPacket();
+        for (Map.Entry<String, Double> value : values.entrySet()) {
+            packet.put(value.getKey(), value.getValue());
+        }
+        dashboard.sendTelemetryPacket(packet);
+    }
+}
@@ -0,0 +1,191 @@
+package org.firstinspires.ftc.teamcode;
+
+import android.graphics.Bitmap;
+
+import com.acmerobotics.dashboard.FtcDashboard;
+
+import org.firstinspires.ftc.robotcore.external.function.Consumer;
+import org.firstinspires.ftc.robotcore.external.function.Continuation;
+import org.firstinspires.ftc.robotcore.external.function.ContinuationResult;
+import org.firstinspires.ftc.robotcore.external.stream.CameraStreamSource;
+import org.opencv.android.Utils;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Streams pipeline output to FtcDashboard without the camera thread paying for it. Handing the
+ * camera itself to startCameraStream converts every streamed full size frame to a Bitmap on the
+ * camera thread. Instead, the pipeline offers each output here and only when the dashboard has
+ * asked for a frame and the single mailbox slot is empty is a downscaled copy made. Converting
+ * to a Bitmap and the dashboard's JPEG encoding then run on a low priority thread of our own.
+ *
+ * The dashboard asks for the next frame once it has sent the last one, so the stream runs as
+ * fast as the client drains it (up to the max fps) and frames are simply not copied while it
+ * lags behind. Nothing is copied at all while nobody is connected.
+ */
+public class DashboardStreamer implements CameraStreamSource, OverlayPipeline.Streamer {
+    private static final Size SCALE_BY_FACTOR = new Size();
+
+    private final Object lock = new Object();
+    private final double scale;
+    private final Thread encoder;
+
+    // Guarded by lock
+    private Continuation<? extends Consumer<Bitmap>> request;
+    private Mat slot = new Mat();
+    private boolean slotFull = false;
+
+    // Encoder thread only
+    private Mat encoding = new Mat();
+    private final Bitmap[] bitmaps = new Bitmap[2];  // the dashboard may still hold the last one
+    private int nextBitmap = 0;
+
+    private volatile long framesSent = 0;
+    private volatile long framesSkipped = 0;
+    private volatile double streamFps = 0;
+    private long lastSentNanos = 0;
+
+    /**
+     * @param scale size of the preview relative to the pipeline output, e.g. 0.5
+     */
+    public DashboardStreamer(double scale) {
+        this.scale = scale;
+        encoder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                encodeLoop();
+            }
+        }, "DashboardStreamer encoder");
+        encoder.setDaemon(true);
+        encoder.setPriority(Thread.MIN_PRIORITY);
+        encoder.start();
+    }
+
+    /**
+     * Start streaming to the dashboard at no more than maxFps.
+     */
+    public void start(double maxFps) {
+        FtcDashboard.getInstance().startCameraStream(this, maxFps);
+    }
+
+    public void stop() {
+        FtcDashboard.getInstance().stopCameraStream();
+        synchronized (lock) {
+            request = null;
+        }
+    }
+
+    /**
+     * Called by the dashboard's stream thread when it wants the next frame.
+     */
+    @Override
+    public void getFrameBitmap(Continuation<? extends Consumer<Bitmap>> continuation) {
+        synchronized (lock) {
+            request = continuation;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Called on the camera thread with each pipeline output. Returns at once unless the
+     * dashboard is waiting for a frame and the mailbox is empty.
+     */
+    @Override
+    public void offer(Mat output) {
+        synchronized (lock) {
+            if (request == null) {
+                return;
+            }
+            if (slotFull) {
+                framesSkipped++;
+                return;
+            }
+            Imgproc.resize(output, slot, SCALE_BY_FACTOR, scale, scale, Imgproc.INTER_NEAREST);
+            slotFull = true;
+            lock.notifyAll();
+        }
+    }
+
+    private void encodeLoop() {
+        try {
+            encodeFrames();
+        } finally {
+            synchronized (lock) {
+                slot.release();
+                encoding.release();
+            }
+        }
+    }
+
+    private void encodeFrames() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Continuation<? extends Consumer<Bitmap>> continuation;
+            synchronized (lock) {
+                try {
+                    while (!slotFull || request == null) {
+                        lock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                Mat filled = slot;
+                slot = encoding;
+                encoding = filled;
+                slotFull = false;
+                continuation = request;
+                request = null;
+            }
+
+            final Bitmap bitmap = bitmapFor(encoding);
+            Utils.matToBitmap(encoding, bitmap);
+            continuation.dispatch(new ContinuationResult<Consumer<Bitmap>>() {
+                @Override
+                public void handle(Consumer<Bitmap> consumer) {
+                    consumer.accept(bitmap);
+                }
+            });
+
+            long now = System.nanoTime();
+            if (lastSentNanos != 0) {
+                double fps = 1e9 / (now - lastSentNanos);
+                streamFps = streamFps == 0 ? fps : streamFps + (fps - streamFps) * OverlayPipeline.TIME_SMOOTHING;
+            }
+            lastSentNanos = now;
+            framesSent++;
+        }
+    }
+
+    private Bitmap bitmapFor(Mat mat) {
+        nextBitmap ^= 1;
+        Bitmap bitmap = bitmaps[nextBitmap];
+        if (bitmap == null || bitmap.getWidth() != mat.cols() || bitmap.getHeight() != mat.rows()) {
+            bitmap = Bitmap.createBitmap(mat.cols(), mat.rows(), Bitmap.Config.ARGB_8888);
+            bitmaps[nextBitmap] = bitmap;
+        }
+        return bitmap;
+    }
+
+    /**
+     * @return the rate the dashboard client is actually being sent frames at
+     */
+    public double getStreamFps() {
+        return streamFps;
+    }
+
+    public long getFramesSent() {
+        return framesSent;
+    }
+
+    /**
+     * @return frames the dashboard was waiting for but the encoder was still busy with the last
+     */
+    public long getFramesSkipped() {
+        return framesSkipped;
+    }
+
+    public void close() {
+        stop();
+        encoder.interrupt();
+    }
+}
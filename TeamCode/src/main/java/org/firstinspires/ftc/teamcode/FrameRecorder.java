@@ -0,0 +1,266 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Records raw camera frames into a preallocated, memory-mapped ring file so we can see afterwards
+ * what the camera saw during a match.
+ *
+ * {@link #offer(Mat, long)} runs on the camera thread and only copies the pixels into one of a
+ * few preallocated buffers; a background thread moves them into the mapped file. When the
+ * writer falls behind and no buffer is free the frame is dropped, the camera thread never waits.
+ * Nothing is encoded, the file holds the Mat bytes as they came.
+ *
+ * File layout (big endian):
+ * <pre>
+ *   header   MAGIC, VERSION, slot count, slot bytes, frames written (long)
+ *   index    one INDEX_ENTRY_BYTES entry per slot: sequence, capture nanos, width, height,
+ *            Mat type, data length; sequence is -1 while the slot is being written
+ *   data     slot count * slot bytes, starting at a page boundary
+ * </pre>
+ * Frame n goes into slot n % slot count, so the file always holds the newest frames. Opening a
+ * recorder on an existing file reuses it; see {@link #rotatingFile(File, int)} to keep a fixed
+ * number of recordings around instead of a new file per run.
+ */
+public class FrameRecorder {
+    public static final int MAGIC = 0x52485346;  // "RHSF"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 64;
+    public static final int INDEX_ENTRY_BYTES = 32;
+    static final int PAGE_BYTES = 4096;
+    static final int HANDOFF_BUFFERS = 3;
+    static final String FILE_PREFIX = "frames-";
+    static final String FILE_EXTENSION = ".ring";
+
+    private final int slotCount;
+    private final int slotBytes;
+    private final int dataOffset;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer mapped;
+    private final ByteBuffer writeView;   // the writer thread's cursor into mapped
+
+    private final BlockingQueue<Frame> free;
+    private final BlockingQueue<Frame> filled;
+    private final Thread writer;
+
+    private long sequence = 0;
+    private volatile long written = 0;
+    private volatile long dropped = 0;
+    // offer() runs entirely under this lock, so once close() has set closed under it no offer
+    // can still be using continuous
+    private final Object offerLock = new Object();
+    private volatile boolean closed = false;
+
+    private Mat continuous;  // guarded by offerLock
+
+    /**
+     * @param slotCount how many frames the ring holds
+     * @param slotBytes room per frame, e.g. total() * elemSize() of the largest frame expected
+     */
+    public FrameRecorder(File path, int slotCount, int slotBytes) throws IOException {
+        this.slotCount = slotCount;
+        this.slotBytes = slotBytes;
+        this.dataOffset = dataOffset(slotCount);
+
+        long size = (long) dataOffset + (long) slotCount * slotBytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Ring file of " + size + " bytes is too large to map");
+        }
+
+        file = new RandomAccessFile(path, "rw");
+        file.setLength(size);
+        mapped = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        mapped.order(ByteOrder.BIG_ENDIAN);
+        writeView = mapped.duplicate();
+
+        mapped.putInt(0, MAGIC);
+        mapped.putInt(4, VERSION);
+        mapped.putInt(8, slotCount);
+        mapped.putInt(12, slotBytes);
+        mapped.putLong(16, 0);
+        for (int slot = 0; slot < slotCount; slot++) {
+            mapped.putLong(HEADER_BYTES + slot * INDEX_ENTRY_BYTES, -1);
+        }
+
+        free = new ArrayBlockingQueue<>(HANDOFF_BUFFERS);
+        filled = new ArrayBlockingQueue<>(HANDOFF_BUFFERS);
+        for (int i = 0; i < HANDOFF_BUFFERS; i++) {
+            free.add(new Frame(slotBytes));
+        }
+
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "FrameRecorder writer");
+        writer.setPriority(Thread.MIN_PRIORITY);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Pick the file for the next recording out of keep fixed names in directory: the first that
+     * does not exist yet, otherwise the one written longest ago. Recording into it overwrites it,
+     * so the directory never holds more than keep recordings.
+     */
+    public static File rotatingFile(File directory, int keep) {
+        File oldest = null;
+        for (int i = 0; i < keep; i++) {
+            File candidate = new File(directory, FILE_PREFIX + i + FILE_EXTENSION);
+            if (!candidate.exists()) {
+                return candidate;
+            }
+            if (oldest == null || candidate.lastModified() < oldest.lastModified()) {
+                oldest = candidate;
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * @return room a slot needs for frames like this one
+     */
+    public static int slotBytesFor(Mat frame) {
+        return (int) (frame.total() * frame.elemSize());
+    }
+
+    static int dataOffset(int slotCount) {
+        int index = HEADER_BYTES + slotCount * INDEX_ENTRY_BYTES;
+        return (index + PAGE_BYTES - 1) / PAGE_BYTES * PAGE_BYTES;
+    }
+
+    /**
+     * Copy a frame for recording. Never blocks; drops the frame if the writer is behind or the
+     * frame does not fit a slot.
+     */
+    public void offer(Mat input, long captureTimeNanos) {
+        synchronized (offerLock) {
+            if (closed) {
+                return;
+            }
+            int length = (int) (input.total() * input.elemSize());
+            Frame frame = free.poll();
+            if (frame == null || length > slotBytes || CvType.depth(input.type()) != CvType.CV_8U) {
+                if (frame != null) {
+                    free.offer(frame);
+                }
+                dropped++;
+                return;
+            }
+
+            Mat source = input;
+            if (!input.isContinuous()) {
+                if (continuous == null) {
+                    continuous = new Mat();
+                }
+                input.copyTo(continuous);
+                source = continuous;
+            }
+            source.get(0, 0, frame.data);
+
+            frame.sequence = sequence++;
+            frame.captureTimeNanos = captureTimeNanos;
+            frame.width = input.cols();
+            frame.height = input.rows();
+            frame.type = input.type();
+            frame.length = length;
+            filled.offer(frame);
+        }
+    }
+
+    public long getFramesWritten() {
+        return written;
+    }
+
+    public long getFramesDropped() {
+        return dropped;
+    }
+
+    /**
+     * Stop the writer, flush what was written to storage and close the file.
+     */
+    public void close() {
+        synchronized (offerLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (continuous != null) {
+                continuous.release();
+            }
+        }
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mapped.force();
+        try {
+            file.close();
+        } catch (IOException e) {
+            // Everything was forced out above, nothing left to lose
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                Frame frame = filled.take();
+                write(frame);
+                free.offer(frame);
+            }
+        } catch (InterruptedException e) {
+            // Closing; write out whatever is still queued
+            Frame frame;
+            while ((frame = filled.poll()) != null) {
+                write(frame);
+            }
+        }
+    }
+
+    private void write(Frame frame) {
+        int slot = (int) (frame.sequence % slotCount);
+        int entry = HEADER_BYTES + slot * INDEX_ENTRY_BYTES;
+
+        // Mark the slot as in progress so a reader of a crashed recording skips it
+        mapped.putLong(entry, -1);
+
+        writeView.position(dataOffset + slot * slotBytes);
+        writeView.put(frame.data, 0, frame.length);
+
+        mapped.putLong(entry + 8, frame.captureTimeNanos);
+        mapped.putInt(entry + 16, frame.width);
+        mapped.putInt(entry + 20, frame.height);
+        mapped.putInt(entry + 24, frame.type);
+        mapped.putInt(entry + 28, frame.length);
+        mapped.putLong(entry, frame.sequence);
+        mapped.putLong(16, ++written);
+    }
+
+    private static class Frame {
+        final byte[] data;
+        long sequence;
+        long captureTimeNanos;
+        int width;
+        int height;
+        int type;
+        int length;
+
+        Frame(int bytes) {
+            data = new byte[bytes];
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Mat;
+
+/**
+ * A sequence of recorded frames for {@link ReplayCamera}.
+ */
+public interface FrameSource {
+    /**
+     * Read the next frame into frame, reusing its buffer when the size matches.
+     *
+     * @return capture time of the frame in nanoseconds, relative to any fixed origin, or -1 when
+     * there are no more frames
+     */
+    long next(Mat frame);
+
+    /**
+     * Start again from the first frame.
+     */
+    void rewind();
+
+    void close();
+}
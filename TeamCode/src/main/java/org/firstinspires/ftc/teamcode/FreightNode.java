@@ -0,0 +1,53 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The ball/cube classifier of SamplePipeline for a {@link VisionGraph}: the mean
+ * Cb of a sample region against the same threshold, read from the shared Cb channel.
+ */
+public class FreightNode implements VisionNode {
+    private static final Scalar BLUE = new Scalar(0, 0, 255);
+
+    private final RegionSampler sampler = new RegionSampler();
+    private volatile Rect region = new Rect(50, 50, 50, 50);
+
+    private volatile int average;
+    private volatile SamplePipeline.TYPE type = SamplePipeline.TYPE.BALL;
+
+    @Override
+    public Set<VisionGraph.Input> getInputs() {
+        return EnumSet.of(VisionGraph.Input.CB);
+    }
+
+    @Override
+    public void process(VisionGraph.Frame frame) {
+        sampler.update(frame.get(VisionGraph.Input.CB));
+        average = (int) sampler.mean(region);
+        type = average > SamplePipeline.THRESHOLD
+                ? SamplePipeline.TYPE.BALL : SamplePipeline.TYPE.CUBE;
+    }
+
+    @Override
+    public void drawOverlay(Mat output) {
+        Imgproc.rectangle(output, region, BLUE, 2);
+    }
+
+    public void setRegion(Rect region) {
+        this.region = region.clone();
+    }
+
+    public int getAverage() {
+        return average;
+    }
+
+    public SamplePipeline.TYPE getType() {
+        return type;
+    }
+}
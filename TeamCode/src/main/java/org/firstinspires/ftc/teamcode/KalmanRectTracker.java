@@ -0,0 +1,182 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * Constant velocity Kalman filter on the midpoint of the rect a {@link ContourPipeline} measured
+ * in each frame, so the drive code can ask where the target is at any moment, with an
+ * uncertainty, instead of only when a frame has been processed. Each axis is filtered on its own
+ * with a position/velocity state; width and height are held from the last measurement.
+ *
+ * Only {@link ContourDetection#measuredX the measured rect} is used, never the pipeline's sticky
+ * choice, which can repeat an old frame's rect and would look like a target standing still.
+ *
+ * Detections are applied at their capture time and estimates are extrapolated to whenever they
+ * are asked for, so skipped frames and pipeline latency look the same: the estimate coasts on
+ * the velocity and the uncertainty grows until the next detection pulls it back.
+ *
+ * Thread safe; typically updated from the camera thread and read from the OpMode.
+ */
+public class KalmanRectTracker {
+    /**
+     * Immutable estimate at one point in time, midpoints in pixels and velocities in pixels per
+     * second.
+     */
+    public static final class Estimate {
+        public final double midpointX;
+        public final double midpointY;
+        public final double velocityX;
+        public final double velocityY;
+        public final double width;
+        public final double height;
+        public final double uncertainty;  // 1 sigma of the midpoint, in pixels
+        public final boolean tracking;
+
+        Estimate(double midpointX, double midpointY, double velocityX, double velocityY,
+                 double width, double height, double uncertainty, boolean tracking) {
+            this.midpointX = midpointX;
+            this.midpointY = midpointY;
+            this.velocityX = velocityX;
+            this.velocityY = velocityY;
+            this.width = width;
+            this.height = height;
+            this.uncertainty = uncertainty;
+            this.tracking = tracking;
+        }
+    }
+
+    private static final Estimate NOT_TRACKING = new Estimate(0, 0, 0, 0, 0, 0, Double.POSITIVE_INFINITY, false);
+
+    private final double accelerationNoise;  // (px/s^2)^2 per second
+    private final double measurementNoise;   // px^2
+    private final double initialVelocityVariance;
+    private final double maxUncertainty;
+
+    private final Axis x = new Axis();
+    private final Axis y = new Axis();
+    private double width;
+    private double height;
+    private long stateNanos;
+    private long lastSequence = 0;
+    private boolean initialized = false;
+
+    /**
+     * @param accelerationSigma how hard the target can accelerate across the image, px/s^2
+     * @param measurementSigma  how far a detected midpoint scatters around the truth, px
+     * @param maxUncertainty    beyond this many pixels of uncertainty the track is dropped
+     */
+    public KalmanRectTracker(double accelerationSigma, double measurementSigma, double maxUncertainty) {
+        this.accelerationNoise = accelerationSigma * accelerationSigma;
+        this.measurementNoise = measurementSigma * measurementSigma;
+        this.initialVelocityVariance = 4 * accelerationSigma * accelerationSigma;
+        this.maxUncertainty = maxUncertainty;
+    }
+
+    /**
+     * Apply the detection if it is from a frame not seen yet. Frames with nothing measured
+     * only let the estimate coast.
+     *
+     * @return true if the detection was applied
+     */
+    public synchronized boolean update(ContourDetection detection) {
+        if (detection.frameSequence == 0 || detection.frameSequence == lastSequence) {
+            return false;
+        }
+        lastSequence = detection.frameSequence;
+        if (!detection.hasMeasurement()) {
+            return false;
+        }
+
+        double midpointX = detection.measuredX + detection.measuredWidth / 2.0;
+        double midpointY = detection.measuredY + detection.measuredHeight / 2.0;
+        long nanos = detection.captureTimeNanos;
+        if (!initialized || uncertaintyAt(nanos) > maxUncertainty) {
+            x.reset(midpointX, measurementNoise, initialVelocityVariance);
+            y.reset(midpointY, measurementNoise, initialVelocityVariance);
+            initialized = true;
+        } else {
+            double dt = Math.max(0, (nanos - stateNanos) / 1e9);
+            x.predict(dt, accelerationNoise);
+            y.predict(dt, accelerationNoise);
+            x.correct(midpointX, measurementNoise);
+            y.correct(midpointY, measurementNoise);
+        }
+        width = detection.measuredWidth;
+        height = detection.measuredHeight;
+        stateNanos = nanos;
+        return true;
+    }
+
+    /**
+     * @return where the target is expected to be at the given System.nanoTime()
+     */
+    public synchronized Estimate estimate(long nanos) {
+        if (!initialized) {
+            return NOT_TRACKING;
+        }
+        double dt = Math.max(0, (nanos - stateNanos) / 1e9);
+        double uncertainty = uncertaintyAt(nanos);
+        return new Estimate(x.position + x.velocity * dt, y.position + y.velocity * dt,
+                x.velocity, y.velocity, width, height, uncertainty, uncertainty <= maxUncertainty);
+    }
+
+    /**
+     * @return 1 sigma midpoint uncertainty at the given time in pixels, infinite before the
+     * first detection
+     */
+    public synchronized double uncertaintyAt(long nanos) {
+        if (!initialized) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double dt = Math.max(0, (nanos - stateNanos) / 1e9);
+        return Math.sqrt(Math.max(x.predictedVariance(dt, accelerationNoise),
+                y.predictedVariance(dt, accelerationNoise)));
+    }
+
+    public synchronized void reset() {
+        initialized = false;
+        lastSequence = 0;
+    }
+
+    /**
+     * Position and velocity along one image axis with their 2x2 covariance.
+     */
+    private static class Axis {
+        double position;
+        double velocity;
+        double p00;  // position variance
+        double p01;  // position/velocity covariance
+        double p11;  // velocity variance
+
+        void reset(double measured, double measurementNoise, double velocityVariance) {
+            position = measured;
+            velocity = 0;
+            p00 = measurementNoise;
+            p01 = 0;
+            p11 = velocityVariance;
+        }
+
+        void predict(double dt, double q) {
+            position += velocity * dt;
+            double dt2 = dt * dt;
+            p00 += 2 * dt * p01 + dt2 * p11 + q * dt2 * dt / 3;
+            p01 += dt * p11 + q * dt2 / 2;
+            p11 += q * dt;
+        }
+
+        double predictedVariance(double dt, double q) {
+            double dt2 = dt * dt;
+            return p00 + 2 * dt * p01 + dt2 * p11 + q * dt2 * dt / 3;
+        }
+
+        void correct(double measured, double r) {
+            double s = p00 + r;
+            double k0 = p00 / s;
+            double k1 = p01 / s;
+            double innovation = measured - position;
+            position += k0 * innovation;
+            velocity += k1 * innovation;
+            p11 -= k1 * p01;
+            p00 -= k0 * p00;
+            p01 -= k0 * p01;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * Measures how old a vision result is by the time the robot acts on it. The pipeline stamps
+ * each {@link ContourDetection} with its capture, pipeline start and publish times; the OpMode
+ * adds when it read the detection ({@link #read}) and when it sent the motor command based on it
+ * ({@link #commandSent()}). Each frame is counted once, on the first read and command after it
+ * was published.
+ *
+ * The breakdown goes to FtcDashboard through a {@link StageTimer}, one window per publish
+ * interval, so resolution and pipeline choices can be compared by actual reaction time.
+ */
+public class LatencyMonitor {
+    // Stages recorded on the stage timer
+    static final int CAPTURE_TO_START = 0;
+    static final int PIPELINE = 1;
+    static final int PUBLISH_TO_READ = 2;
+    static final int READ_TO_COMMAND = 3;
+    static final int CAPTURE_TO_COMMAND = 4;
+
+    private final StageTimer timer = new StageTimer(
+            "capture to start", "pipeline", "publish to read", "read to command", "capture to command");
+    private final String prefix;
+
+    private long lastSequence = 0;
+    private ContourDetection pending;
+    private long readNanos;
+    private volatile double lastCaptureToCommandMs = 0;
+
+    /**
+     * @param prefix what the dashboard keys start with, e.g. the pipeline name
+     */
+    public LatencyMonitor(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * Note that the OpMode has just read this detection.
+     *
+     * @return the detection, so this can wrap the getter
+     */
+    public ContourDetection read(ContourDetection detection) {
+        if (detection.frameSequence == 0 || detection.frameSequence == lastSequence) {
+            return detection;
+        }
+        long now = System.nanoTime();
+        lastSequence = detection.frameSequence;
+        pending = detection;
+        readNanos = now;
+
+        timer.getHistogram(CAPTURE_TO_START).record(detection.pipelineStartNanos - detection.captureTimeNanos);
+        timer.getHistogram(PIPELINE).record(detection.pipelineEndNanos - detection.pipelineStartNanos);
+        timer.getHistogram(PUBLISH_TO_READ).record(now - detection.pipelineEndNanos);
+        return detection;
+    }
+
+    /**
+     * Note that the motor command computed from the last read detection has just been sent,
+     * i.e. call right after setPower().
+     */
+    public void commandSent() {
+        if (pending == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        timer.getHistogram(READ_TO_COMMAND).record(now - readNanos);
+        timer.getHistogram(CAPTURE_TO_COMMAND).record(now - pending.captureTimeNanos);
+        lastCaptureToCommandMs = (now - pending.captureTimeNanos) / 1e6;
+        pending = null;
+    }
+
+    /**
+     * Call from the OpMode loop; sends the window to FtcDashboard once per publish interval.
+     */
+    public void publishIfDue() {
+        timer.publishIfDue(prefix + " latency");
+    }
+
+    /**
+     * @return capture to command time of the last frame acted on, for telemetry
+     */
+    public double getLastCaptureToCommandMs() {
+        return lastCaptureToCommandMs;
+    }
+
+    public StageTimer getStageTimer() {
+        return timer;
+    }
+}
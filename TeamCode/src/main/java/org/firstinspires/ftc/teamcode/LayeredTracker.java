@@ -0,0 +1,76 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+/**
+ * A tracker for {@link ParallelTrackerPipeline}, the counterpart of EasyOpenCV's OpenCvTracker.
+ * Trackers run at the same time over one shared camera frame, so instead of drawing on the frame
+ * each one draws on its own transparent RGBA layer, and the pipeline composites the layers once
+ * all trackers are done.
+ *
+ * Each tracker's time per frame is measured, so the one that limits the frame rate shows up.
+ */
+public abstract class LayeredTracker {
+    private static final Scalar TRANSPARENT = new Scalar(0, 0, 0, 0);
+
+    private final LatencyHistogram times = new LatencyHistogram();
+    private final Mat layer = new Mat();
+    private volatile double timeMs = 0;
+    private boolean layerHasContent = false;  // anything drawn, or garbage from create(), since the last clear
+
+    /**
+     * Analyze the frame. Called on a pipeline worker thread, at the same time as other trackers.
+     *
+     * @param frame the camera frame, shared with the other trackers and must not be modified
+     * @param layer this tracker's overlay, transparent at the start of every frame; anything drawn
+     *              with a non-zero alpha shows up on the viewport. Null while the overlay is off,
+     *              in which case skip drawing.
+     */
+    protected abstract void processFrame(Mat frame, Mat layer);
+
+    void run(Mat frame, boolean drawing) {
+        long start = System.nanoTime();
+        Mat target = null;
+        if (drawing) {
+            if (layer.rows() != frame.rows() || layer.cols() != frame.cols()) {
+                layer.create(frame.rows(), frame.cols(), CvType.CV_8UC4);
+                layerHasContent = true;
+            }
+            // Frames drawn before the overlay was last turned off are still on the layer
+            if (layerHasContent) {
+                layer.setTo(TRANSPARENT);
+            }
+            target = layer;
+        }
+        processFrame(frame, target);
+        if (drawing) {
+            layerHasContent = true;
+        }
+
+        long nanos = System.nanoTime() - start;
+        times.record(nanos);
+        timeMs = timeMs == 0 ? nanos / 1e6
+                : timeMs + (nanos / 1e6 - timeMs) * OverlayPipeline.TIME_SMOOTHING;
+    }
+
+    Mat getLayer() {
+        return layer;
+    }
+
+    /**
+     * @return average time per frame spent in {@link #processFrame}, drawing included
+     */
+    public double getTimeMs() {
+        return timeMs;
+    }
+
+    public LatencyHistogram getHistogram() {
+        return times;
+    }
+
+    public void release() {
+        layer.release();
+    }
+}
@@ -0,0 +1,60 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mats handed out per frame and taken back at the end of it, so a pipeline that needs a varying
+ * set of buffers reuses the same native memory every frame instead of allocating. A Mat of the
+ * right size and type is preferred; any other free Mat is reallocated by the caller's create().
+ *
+ * Not thread safe; acquire and recycle from one thread.
+ */
+public class MatPool {
+    private final List<Mat> free = new ArrayList<>();
+    private int created = 0;
+
+    /**
+     * @return a Mat with the given size and type, contents undefined
+     */
+    public Mat acquire(int rows, int cols, int type) {
+        for (int i = 0; i < free.size(); i++) {
+            Mat mat = free.get(i);
+            if (mat.rows() == rows && mat.cols() == cols && mat.type() == type) {
+                return free.remove(i);
+            }
+        }
+        Mat mat;
+        if (free.isEmpty()) {
+            mat = new Mat();
+            created++;
+        } else {
+            mat = free.remove(free.size() - 1);
+        }
+        mat.create(rows, cols, type);
+        return mat;
+    }
+
+    public void recycle(Mat mat) {
+        free.add(mat);
+    }
+
+    /**
+     * @return how many Mats the pool has ever allocated; stays flat once it has warmed up
+     */
+    public int getCreated() {
+        return created;
+    }
+
+    /**
+     * Release the free Mats. Mats still handed out are the holder's to release.
+     */
+    public void release() {
+        for (Mat mat : free) {
+            mat.release();
+        }
+        free.clear();
+    }
+}
@@ -0,0 +1,131 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Mat;
+import org.openftc.easyopencv.OpenCvPipeline;
+
+/**
+ * A pipeline whose debug drawing is split out of the analysis so it only runs while someone is
+ * looking at the frames (the RC viewport or the FtcDashboard camera stream). OpModes turn the
+ * overlay off with {@link #setOverlayEnabled(boolean)} once nobody is watching.
+ *
+ * Both stages are timed so the cost of the overlay can be compared to the analysis on telemetry.
+ * Subclasses can also time their own stages with {@link #stageTimer}; the overlay is recorded as
+ * its last stage and everything is published to FtcDashboard at a throttled rate.
+ *
+ * The output can be handed to a {@link Streamer} every frame, e.g. a {@link DashboardStreamer},
+ * which keeps the Bitmap and JPEG work for FtcDashboard off the camera thread.
+ */
+public abstract class OverlayPipeline extends OpenCvPipeline {
+    // Weight of the newest sample in the running averages
+    static final double TIME_SMOOTHING = 0.1;
+
+    /**
+     * Takes the output of every frame, on the camera thread. Must return quickly and must not
+     * hold on to the Mat.
+     */
+    public interface Streamer {
+        void offer(Mat output);
+    }
+
+    protected final StageTimer stageTimer;
+    private final int overlayStage;
+    private final String timerPrefix;
+
+    private volatile boolean overlayEnabled = true;
+    private volatile double analysisTimeMs = 0;
+    private volatile double overlayTimeMs = 0;
+    private volatile Streamer streamer;
+
+    /**
+     * @param stageNames names of the stages the subclass records on {@link #stageTimer}, in
+     *                   index order
+     */
+    protected OverlayPipeline(String... stageNames) {
+        String[] names = new String[stageNames.length + 1];
+        System.arraycopy(stageNames, 0, names, 0, stageNames.length);
+        overlayStage = stageNames.length;
+        names[overlayStage] = "overlay";
+        stageTimer = new StageTimer(names);
+        timerPrefix = getClass().getSimpleName();
+    }
+
+    /**
+     * Do the actual work for this frame. Must not draw on the input.
+     *
+     * @param overlay whether {@link #drawOverlay(Mat, Mat)} will be called for this frame; the
+     *                flag is read once per frame, so use this rather than
+     *                {@link #isOverlayEnabled()}, which can change halfway through
+     * @return the Mat to show in the viewport
+     */
+    protected abstract Mat analyze(Mat input, boolean overlay);
+
+    /**
+     * Draw the debug overlay. Only called for frames {@link #analyze(Mat, boolean)} was told
+     * would get one.
+     *
+     * @param input the camera frame
+     * @param output the Mat returned by {@link #analyze(Mat, boolean)}
+     */
+    protected abstract void drawOverlay(Mat input, Mat output);
+
+    @Override
+    public final Mat processFrame(Mat input) {
+        boolean overlay = overlayEnabled;
+        long start = System.nanoTime();
+        Mat output = analyze(input, overlay);
+        long analyzed = System.nanoTime();
+        analysisTimeMs = smooth(analysisTimeMs, analyzed - start);
+
+        if (overlay) {
+            drawOverlay(input, output);
+            long overlayNanos = System.nanoTime() - analyzed;
+            overlayTimeMs = smooth(overlayTimeMs, overlayNanos);
+            stageTimer.getHistogram(overlayStage).record(overlayNanos);
+        }
+        Streamer streamer = this.streamer;
+        if (streamer != null) {
+            streamer.offer(output);
+        }
+        stageTimer.publishIfDue(timerPrefix);
+        return output;
+    }
+
+    public void setOverlayEnabled(boolean overlayEnabled) {
+        this.overlayEnabled = overlayEnabled;
+    }
+
+    /**
+     * Stream the output of every frame through this streamer, or stop with null.
+     */
+    public void setStreamer(Streamer streamer) {
+        this.streamer = streamer;
+    }
+
+    public StageTimer getStageTimer() {
+        return stageTimer;
+    }
+
+    public boolean isOverlayEnabled() {
+        return overlayEnabled;
+    }
+
+    /**
+     * @return average time per frame spent in {@link #analyze(Mat, boolean)}
+     */
+    public double getAnalysisTimeMs() {
+        return analysisTimeMs;
+    }
+
+    /**
+     * @return average time per frame the overlay took while it was enabled, i.e. what turning it
+     * off saves
+     */
+    public double getOverlayTimeMs() {
+        return overlayTimeMs;
+    }
+
+    private static double smooth(double averageMs, long sampleNanos) {
+        double sampleMs = sampleNanos / 1e6;
+        return averageMs == 0 ? sampleMs : averageMs + (sampleMs - averageMs) * TIME_SMOOTHING;
+    }
+}
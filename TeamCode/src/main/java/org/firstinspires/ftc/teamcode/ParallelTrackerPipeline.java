@@ -0,0 +1,185 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a set of {@link LayeredTracker}s on every frame at the same time, instead of one after the
+ * other like EasyOpenCV's OpenCvTrackerApiPipeline. All trackers read the same camera frame, which
+ * nobody writes to until every tracker is done. Each draws on its own layer, and the layers are
+ * composited onto the frame once at the end, and only while the overlay is enabled.
+ *
+ * At most the given number of trackers run at once; the last tracker runs on the camera thread
+ * so one worker fewer is needed. Trackers can be added and removed while streaming.
+ */
+public class ParallelTrackerPipeline extends OverlayPipeline {
+    // Stages recorded on the stage timer
+    static final int TRACKERS = 0;
+
+    // The worker threads go away when the pipeline has not been fed for this long
+    static final long WORKER_IDLE_SECONDS = 2;
+
+    private final List<LayeredTracker> trackers = new CopyOnWriteArrayList<>();
+    private final List<Future<?>> pending = new ArrayList<>();
+    private final ThreadPoolExecutor workers;
+    private final Mat alpha = new Mat();
+    private final Mat rgb = new Mat();
+
+    // One task per tracker, rebuilt when trackers are added or removed rather than every frame
+    private volatile TrackerTask[] tasks = new TrackerTask[0];
+    private TrackerTask[] running = tasks;  // what the current frame runs, so drawOverlay matches
+
+    private volatile boolean drawing;
+    private Mat frame;
+
+    /**
+     * @param maxConcurrent how many trackers may run at once, counting the camera thread
+     */
+    public ParallelTrackerPipeline(int maxConcurrent) {
+        super("trackers");
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("Need at least one tracker at a time, was " + maxConcurrent);
+        }
+        int threads = Math.max(1, maxConcurrent - 1);
+        workers = new ThreadPoolExecutor(threads, threads, WORKER_IDLE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ParallelTrackerPipeline worker " + (++count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    public synchronized void addTracker(LayeredTracker tracker) {
+        trackers.add(tracker);
+        rebuildTasks();
+    }
+
+    public synchronized void removeTracker(LayeredTracker tracker) {
+        trackers.remove(tracker);
+        rebuildTasks();
+    }
+
+    // Caller holds the lock
+    private void rebuildTasks() {
+        TrackerTask[] rebuilt = new TrackerTask[trackers.size()];
+        for (int i = 0; i < rebuilt.length; i++) {
+            rebuilt[i] = new TrackerTask(trackers.get(i));
+        }
+        tasks = rebuilt;
+    }
+
+    public List<LayeredTracker> getTrackers() {
+        return trackers;
+    }
+
+    /**
+     * @return the tracker that took the longest per frame on average, or null without trackers
+     */
+    public LayeredTracker getSlowestTracker() {
+        LayeredTracker slowest = null;
+        for (LayeredTracker tracker : trackers) {
+            if (slowest == null || tracker.getTimeMs() > slowest.getTimeMs()) {
+                slowest = tracker;
+            }
+        }
+        return slowest;
+    }
+
+    @Override
+    protected Mat analyze(Mat input, boolean overlay) {
+        long t = stageTimer.now();
+        frame = input;
+        drawing = overlay;
+
+        TrackerTask[] current = tasks;
+        running = current;
+        int last = current.length - 1;
+        for (int i = 0; i < last; i++) {
+            pending.add(workers.submit(current[i]));
+        }
+
+        RuntimeException failure = null;
+        if (last >= 0) {
+            try {
+                current[last].run();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        // No one may draw on the frame until every tracker has finished reading it
+        boolean interrupted = false;
+        for (Future<?> future : pending) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = new RuntimeException(e.getCause());
+                    }
+                    break;
+                }
+            }
+        }
+        pending.clear();
+        frame = null;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        stageTimer.record(TRACKERS, t);
+        return input;
+    }
+
+    @Override
+    protected void drawOverlay(Mat input, Mat output) {
+        for (TrackerTask task : running) {
+            Mat layer = task.tracker.getLayer();
+            if (layer.empty() || layer.rows() != input.rows() || layer.cols() != input.cols()) {
+                continue;
+            }
+            Core.extractChannel(layer, alpha, 3);
+            if (input.channels() == 4) {
+                layer.copyTo(input, alpha);
+            } else {
+                Imgproc.cvtColor(layer, rgb, Imgproc.COLOR_RGBA2RGB);
+                rgb.copyTo(input, alpha);
+            }
+        }
+    }
+
+    private class TrackerTask implements Runnable {
+        final LayeredTracker tracker;
+
+        TrackerTask(LayeredTracker tracker) {
+            this.tracker = tracker;
+        }
+
+        @Override
+        public void run() {
+            tracker.run(frame, drawing);
+        }
+    }
+}
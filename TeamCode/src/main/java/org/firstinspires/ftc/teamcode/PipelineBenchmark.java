@@ -0,0 +1,131 @@
+package org.firstinspires.ftc.teamcode;
+
+import android.os.Debug;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.openftc.easyopencv.OpenCvPipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Drives an {@link OpenCvPipeline} over a set of recorded frames without a camera and measures
+ * frames per second, per-frame latency percentiles and how much the Java heap allocation grows
+ * per frame.
+ *
+ * Frames are decoded and scaled once up front, and each one is copied into a work Mat before it
+ * is timed, because pipelines draw on their input.
+ */
+public class PipelineBenchmark {
+    public static final int WARMUP_FRAMES = 30;
+
+    /**
+     * Read every remaining frame of source, scaled to the given resolution. The source is left
+     * open, so it can be rewound and read again at another resolution.
+     */
+    public static List<Mat> loadFrames(FrameSource source, int width, int height) {
+        List<Mat> frames = new ArrayList<>();
+        Size size = new Size(width, height);
+        Mat frame = new Mat();
+        while (source.next(frame) >= 0) {
+            Mat scaled = new Mat();
+            Imgproc.resize(frame, scaled, size, 0, 0, Imgproc.INTER_AREA);
+            frames.add(scaled);
+        }
+        frame.release();
+        return frames;
+    }
+
+    public static void releaseFrames(List<Mat> frames) {
+        for (Mat frame : frames) {
+            frame.release();
+        }
+        frames.clear();
+    }
+
+    /**
+     * Run the pipeline over the frames, looping over them until measuredFrames have been timed.
+     */
+    public static Result run(String name, OpenCvPipeline pipeline, List<Mat> frames, int measuredFrames) {
+        if (frames.isEmpty()) {
+            throw new IllegalArgumentException("No frames to run " + name + " on");
+        }
+        Mat work = new Mat();
+        LatencyHistogram latency = new LatencyHistogram();
+
+        frames.get(0).copyTo(work);
+        pipeline.init(work);
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            frames.get(i % frames.size()).copyTo(work);
+            pipeline.processFrame(work);
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long totalNanos = 0;
+        for (int i = 0; i < measuredFrames; i++) {
+            frames.get(i % frames.size()).copyTo(work);
+            long start = System.nanoTime();
+            pipeline.processFrame(work);
+            long elapsed = System.nanoTime() - start;
+            latency.record(elapsed);
+            totalNanos += elapsed;
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+        work.release();
+
+        Mat first = frames.get(0);
+        return new Result(name, first.cols(), first.rows(), measuredFrames,
+                measuredFrames / (totalNanos / 1e9),
+                latency.getPercentileNanos(50) / 1e6,
+                latency.getPercentileNanos(95) / 1e6,
+                latency.getPercentileNanos(99) / 1e6,
+                latency.getMaxNanos() / 1e6,
+                allocated < 0 ? -1 : (double) allocated / measuredFrames);
+    }
+
+    // Bytes ever allocated on the heap by this process, or -1 when the runtime does not say.
+    // Other threads allocate too, so treat this as an upper bound for the pipeline.
+    private static long allocatedBytes() {
+        try {
+            return Long.parseLong(Debug.getRuntimeStat("art.gc.bytes-allocated"));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    public static class Result {
+        public final String name;
+        public final int width;
+        public final int height;
+        public final int frames;
+        public final double fps;
+        public final double p50Ms;
+        public final double p95Ms;
+        public final double p99Ms;
+        public final double maxMs;
+        public final double bytesPerFrame;   // -1 if unknown
+
+        Result(String name, int width, int height, int frames, double fps,
+               double p50Ms, double p95Ms, double p99Ms, double maxMs, double bytesPerFrame) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.frames = frames;
+            this.fps = fps;
+            this.p50Ms = p50Ms;
+            this.p95Ms = p95Ms;
+            this.p99Ms = p99Ms;
+            this.maxMs = maxMs;
+            this.bytesPerFrame = bytesPerFrame;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s %dx%d: %.1f fps, p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms, %.0f B/frame",
+                    name, width, height, fps, p50Ms, p95Ms, p99Ms, maxMs, bytesPerFrame);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Mat;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pipeline split in two stages that can overlap across frames. {@link #convert} (color
+ * conversion / thresholding) always runs on the camera thread and fills one of two buffer sets;
+ * {@link #finish} (contours, selection, publishing) then runs on a worker thread while the
+ * camera thread is already converting the next frame into the other set.
+ *
+ * With pipelining off both stages run back to back on the camera thread. With it on, results
+ * are published at most one frame later than they would be, and the camera thread waits for the
+ * previous {@link #finish} before handing over the next buffer set, so a slow second stage
+ * slows the frame rate instead of queueing up frames.
+ *
+ * @param <B> the Mats and state one frame needs between the two stages
+ */
+public abstract class PipelinedPipeline<B> extends OverlayPipeline {
+    // The worker goes away when the pipeline has not been fed for this long
+    static final long WORKER_IDLE_SECONDS = 2;
+
+    private final B[] buffers;
+    private final Runnable[] finishers;
+    private final ThreadPoolExecutor worker;
+
+    private volatile boolean pipelined = false;
+    private Future<?> pending;
+    private int current = 0;
+    private int completed = -1;
+
+    protected PipelinedPipeline(B first, B second, String... stageNames) {
+        super(stageNames);
+        @SuppressWarnings("unchecked")
+        B[] sets = (B[]) new Object[]{first, second};
+        buffers = sets;
+        finishers = new Runnable[2];
+        for (int i = 0; i < 2; i++) {
+            final B set = buffers[i];
+            finishers[i] = new Runnable() {
+                @Override
+                public void run() {
+                    finish(set);
+                }
+            };
+        }
+
+        final String name = getClass().getSimpleName() + " stage 2";
+        worker = new ThreadPoolExecutor(1, 1, WORKER_IDLE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        worker.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Stage 1, on the camera thread.
+     *
+     * @param deferred true when {@link #finish} will run after processFrame has returned. Anything
+     *                 the second stage needs from the input must then be copied into the buffers,
+     *                 since the input Mat is only valid during processFrame.
+     */
+    protected abstract void convert(Mat input, B buffers, boolean deferred);
+
+    /**
+     * Stage 2, on the worker thread when pipelined. Only one call runs at a time, in frame order.
+     */
+    protected abstract void finish(B buffers);
+
+    /**
+     * @return the buffers of the newest frame whose second stage has completed, or null before
+     * the first one. Only valid on the camera thread, e.g. from {@link #drawOverlay}.
+     */
+    protected B getCompletedBuffers() {
+        return completed >= 0 ? buffers[completed] : null;
+    }
+
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    @Override
+    protected final Mat analyze(Mat input, boolean overlay) {
+        boolean deferred = pipelined;
+        B set = buffers[current];
+        convert(input, set, deferred);
+
+        // The other set is still being finished from the previous frame
+        awaitPending();
+        if (deferred) {
+            pending = worker.submit(finishers[current]);
+        } else {
+            finish(set);
+            completed = current;
+        }
+        current ^= 1;
+        return input;
+    }
+
+    private void awaitPending() {
+        if (pending == null) {
+            return;
+        }
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            completed = current ^ 1;
+            pending = null;
+        }
+    }
+}
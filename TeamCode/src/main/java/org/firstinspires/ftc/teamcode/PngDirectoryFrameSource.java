@@ -0,0 +1,63 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Replays the PNG files of a directory in name order as RGB frames. PNGs carry no capture time,
+ * so frames are spaced evenly at the given frame rate.
+ */
+public class PngDirectoryFrameSource implements FrameSource {
+    private final File[] files;
+    private final long frameIntervalNanos;
+    private int index = 0;
+
+    public PngDirectoryFrameSource(File directory, double framesPerSecond) {
+        File[] found = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().toLowerCase(Locale.US).endsWith(".png");
+            }
+        });
+        files = found != null ? found : new File[0];
+        Arrays.sort(files);
+        frameIntervalNanos = (long) (1e9 / framesPerSecond);
+    }
+
+    public int getFrameCount() {
+        return files.length;
+    }
+
+    @Override
+    public long next(Mat frame) {
+        while (index < files.length) {
+            int current = index++;
+            Mat decoded = Imgcodecs.imread(files[current].getAbsolutePath());
+            try {
+                if (decoded.empty()) {
+                    continue;
+                }
+                Imgproc.cvtColor(decoded, frame, Imgproc.COLOR_BGR2RGB);
+                return current * frameIntervalNanos;
+            } finally {
+                decoded.release();
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void rewind() {
+        index = 0;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,87 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Mat;
+import org.openftc.easyopencv.OpenCvPipeline;
+
+/**
+ * Wraps a ContourPipeline and only runs it on every Nth frame, or sooner when the
+ * {@link KalmanRectTracker}'s uncertainty about the target has grown past a threshold. In
+ * between, the drive code reads the tracker's estimate, which coasts on the target's velocity,
+ * so it sees no gaps while most frames cost nothing.
+ *
+ * Skipped frames are passed straight through to the viewport.
+ */
+public class PredictiveSkipPipeline extends OpenCvPipeline {
+    private final ContourPipeline pipeline;
+    private final KalmanRectTracker tracker;
+
+    private volatile int processEvery;
+    private volatile double maxUncertainty;
+    private int sinceProcessed = 0;
+
+    private volatile long framesProcessed = 0;
+    private volatile long framesSkipped = 0;
+
+    /**
+     * @param processEvery   run the pipeline on at least every this many frames; 1 runs it always
+     * @param maxUncertainty run it sooner once the tracker is less sure than this many pixels
+     */
+    public PredictiveSkipPipeline(ContourPipeline pipeline, KalmanRectTracker tracker,
+                                  int processEvery, double maxUncertainty) {
+        this.pipeline = pipeline;
+        this.tracker = tracker;
+        this.processEvery = processEvery;
+        this.maxUncertainty = maxUncertainty;
+    }
+
+    public void setProcessEvery(int processEvery) {
+        this.processEvery = processEvery;
+    }
+
+    public void setMaxUncertainty(double maxUncertainty) {
+        this.maxUncertainty = maxUncertainty;
+    }
+
+    @Override
+    public void init(Mat input) {
+        pipeline.init(input);
+    }
+
+    @Override
+    public Mat processFrame(Mat input) {
+        // A pipelined ContourPipeline publishes a frame late, so pick detections up every frame
+        tracker.update(pipeline.getDetection());
+
+        sinceProcessed++;
+        if (sinceProcessed < processEvery && tracker.uncertaintyAt(System.nanoTime()) <= maxUncertainty) {
+            framesSkipped++;
+            return input;
+        }
+        sinceProcessed = 0;
+        framesProcessed++;
+        Mat output = pipeline.processFrame(input);
+        tracker.update(pipeline.getDetection());
+        return output;
+    }
+
+    @Override
+    public void onViewportTapped() {
+        pipeline.onViewportTapped();
+    }
+
+    public ContourPipeline getPipeline() {
+        return pipeline;
+    }
+
+    public KalmanRectTracker getTracker() {
+        return tracker;
+    }
+
+    public long getFramesProcessed() {
+        return framesProcessed;
+    }
+
+    public long getFramesSkipped() {
+        return framesSkipped;
+    }
+}
@@ -5,16 +5,9 @@ import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
 
 import org.firstinspires.ftc.robotcore.external.hardware.camera.WebcamName;
-import org.opencv.core.Core;
-import org.opencv.core.Mat;
-import org.opencv.core.Point;
-import org.opencv.core.Rect;
-import org.opencv.core.Scalar;
-import org.opencv.imgproc.Imgproc;
 import org.openftc.easyopencv.OpenCvCamera;
 import org.openftc.easyopencv.OpenCvCameraFactory;
 import org.openftc.easyopencv.OpenCvCameraRotation;
-import org.openftc.easyopencv.OpenCvPipeline;
 
 @TeleOp(name = "OpenCV: Ball/Cube", group = "camera")
 public class RHSBallOrCube extends LinearOpMode {
@@ -49,65 +42,12 @@ public class RHSBallOrCube extends LinearOpMode {
         while (opModeIsActive()) {
             telemetry.addData("Type", pipeline.getType());
             telemetry.addData("Average", pipeline.getAverage());
+            int[] regionAverages = pipeline.getRegionAverages();
+            for (int i = 0; i < regionAverages.length; i++) {
+                telemetry.addData("Region " + i, regionAverages[i]);
+            }
             telemetry.update();
             sleep(50);
         }
     }
-
-    public static class SamplePipeline extends OpenCvPipeline {
-        private static final Scalar BLUE = new Scalar(0, 0, 255);
-
-        private static final int THRESHOLD = 107;
-
-        Point topLeft = new Point(50, 50);
-        Point bottomRight = new Point(100, 100);
-
-        Mat region1_Cb;
-        Mat YCrCb = new Mat();
-        Mat Cb = new Mat();
-
-        private volatile int average;
-        private volatile TYPE type = TYPE.BALL;
-
-        private void inputToCb(Mat input) {
-            Imgproc.cvtColor(input, YCrCb, Imgproc.COLOR_RGB2YCrCb);
-            Core.extractChannel(YCrCb, Cb, 2);
-        }
-
-        @Override
-        public void init(Mat input) {
-            inputToCb(input);
-
-            region1_Cb = Cb.submat(new Rect(topLeft, bottomRight));
-        }
-
-        @Override
-        public Mat processFrame(Mat input) {
-            inputToCb(input);
-
-            average = (int) Core.mean(region1_Cb).val[0];
-
-            Imgproc.rectangle(input, topLeft, bottomRight, BLUE, 2);
-
-            if (average > THRESHOLD) {
-                type = TYPE.BALL;
-            } else {
-                type = TYPE.CUBE;
-            }
-
-            return input;
-        }
-
-        public TYPE getType() {
-            return type;
-        }
-
-        public int getAverage() {
-            return average;
-        }
-
-        public enum TYPE {
-            BALL, CUBE
-        }
-    }
-}
\ No newline at end of file
+}
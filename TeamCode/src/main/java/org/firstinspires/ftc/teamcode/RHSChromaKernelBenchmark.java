@@ -0,0 +1,84 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+import org.openftc.easyopencv.OpenCvPipeline;
+
+/**
+ * Compares the fused ChromaKernel with the OpenCV call chains it replaces on the same live
+ * frames: cvtColor + inRange against the mask kernel (ContourPipeline), and cvtColor +
+ * extractChannel against the Cb kernel (SamplePipeline). Also counts the pixels where the
+ * results differ, which should stay at or near zero.
+ */
+@TeleOp(name = "OpenCV: Chroma Kernel Benchmark", group = "camera")
+public class RHSChromaKernelBenchmark extends CameraBenchmark {
+    BenchmarkPipeline pipeline;
+
+    public RHSChromaKernelBenchmark() {
+        super(640, 480);
+    }
+
+    @Override
+    protected OpenCvPipeline createPipeline() {
+        pipeline = new BenchmarkPipeline();
+        return pipeline;
+    }
+
+    @Override
+    protected void addTelemetry() {
+        telemetry.addData("Frames", pipeline.frames);
+        telemetry.addData("Frames with any pixel differing", pipeline.mismatches);
+        telemetry.addData("cvtColor + inRange", pipeline.chainMaskTime);
+        telemetry.addData("fused mask", pipeline.fusedMaskTime);
+        telemetry.addData("mask pixels differing", pipeline.maskDifferences);
+        telemetry.addData("cvtColor + extractChannel", pipeline.chainCbTime);
+        telemetry.addData("fused Cb", pipeline.fusedCbTime);
+        telemetry.addData("Cb pixels differing", pipeline.cbDifferences);
+    }
+
+    static class BenchmarkPipeline extends ComparisonPipeline {
+        ChromaKernel kernel = new ChromaKernel();
+        Mat yCrCb = new Mat();
+        Mat chainMask = new Mat();
+        Mat fusedMask = new Mat();
+        Mat chainCb = new Mat();
+        Mat fusedCb = new Mat();
+        Mat difference = new Mat();
+
+        final Section chainMaskTime = new Section();
+        final Section fusedMaskTime = new Section();
+        final Section chainCbTime = new Section();
+        final Section fusedCbTime = new Section();
+        volatile int maskDifferences;
+        volatile int cbDifferences;
+
+        @Override
+        public Mat processFrame(Mat input) {
+            chainMaskTime.start();
+            Imgproc.cvtColor(input, yCrCb, Imgproc.COLOR_RGB2YCrCb);
+            Core.inRange(yCrCb, ContourPipeline.scalarLowerYCrCb, ContourPipeline.scalarUpperYCrCb, chainMask);
+            chainMaskTime.stop();
+            fusedMaskTime.start();
+            kernel.mask(input, ContourPipeline.scalarLowerYCrCb, ContourPipeline.scalarUpperYCrCb, fusedMask);
+            fusedMaskTime.stop();
+            chainCbTime.start();
+            Imgproc.cvtColor(input, yCrCb, Imgproc.COLOR_RGB2YCrCb);
+            Core.extractChannel(yCrCb, chainCb, 2);
+            chainCbTime.stop();
+            fusedCbTime.start();
+            kernel.cb(input, fusedCb);
+            fusedCbTime.stop();
+
+            Core.absdiff(chainMask, fusedMask, difference);
+            maskDifferences = Core.countNonZero(difference);
+            Core.absdiff(chainCb, fusedCb, difference);
+            cbDifferences = Core.countNonZero(difference);
+
+            countFrame(maskDifferences == 0 && cbDifferences == 0);
+            return input;
+        }
+    }
+}
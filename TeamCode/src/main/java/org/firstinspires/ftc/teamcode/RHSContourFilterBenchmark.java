@@ -0,0 +1,96 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+import org.openftc.easyopencv.OpenCvPipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the old way ContourPipeline filtered contours (toArray() into Java Points, then a new
+ * MatOfPoint2f for boundingRect) with reading the native contour directly. Both run on the same
+ * contours of every live frame; point the camera at something cluttered.
+ */
+@TeleOp(name = "OpenCV: Contour Filter Benchmark", group = "camera")
+public class RHSContourFilterBenchmark extends CameraBenchmark {
+    BenchmarkPipeline pipeline;
+
+    public RHSContourFilterBenchmark() {
+        super(640, 480);
+    }
+
+    @Override
+    protected OpenCvPipeline createPipeline() {
+        pipeline = new BenchmarkPipeline();
+        return pipeline;
+    }
+
+    @Override
+    protected void addTelemetry() {
+        telemetry.addData("Frames", pipeline.frames);
+        telemetry.addData("Frames where the paths disagree", pipeline.mismatches);
+        telemetry.addData("Contours per frame", pipeline.contoursPerFrame);
+        telemetry.addData("toArray per frame", pipeline.copy);
+        telemetry.addData("native per frame", pipeline.direct);
+    }
+
+    static class BenchmarkPipeline extends ComparisonPipeline {
+        Mat yCrCb = new Mat();
+        Mat mask = new Mat();
+        Mat hierarchy = new Mat();
+        List<MatOfPoint> contours = new ArrayList<>();
+
+        final Section copy = new Section();
+        final Section direct = new Section();
+        volatile int contoursPerFrame;
+
+        @Override
+        public Mat processFrame(Mat input) {
+            for (MatOfPoint contour : contours) {
+                contour.release();
+            }
+            contours.clear();
+
+            Imgproc.cvtColor(input, yCrCb, Imgproc.COLOR_RGB2YCrCb);
+            Core.inRange(yCrCb, ContourPipeline.scalarLowerYCrCb, ContourPipeline.scalarUpperYCrCb, mask);
+            Imgproc.findContours(mask, contours, hierarchy, Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
+
+            // Old path: one Point per vertex, a Point[], a MatOfPoint2f and a Rect per contour
+            double copiedArea = 0;
+            copy.start();
+            for (MatOfPoint contour : contours) {
+                Point[] contourArray = contour.toArray();
+                if (contourArray.length >= ContourPipeline.MIN_CONTOUR_POINTS) {
+                    MatOfPoint2f areaPoints = new MatOfPoint2f(contourArray);
+                    Rect rect = Imgproc.boundingRect(areaPoints);
+                    copiedArea += rect.area();
+                    areaPoints.release();
+                }
+            }
+            copy.stop();
+
+            // New path: only the Rect comes back to the Java heap
+            double directArea = 0;
+            direct.start();
+            for (MatOfPoint contour : contours) {
+                if (contour.rows() >= ContourPipeline.MIN_CONTOUR_POINTS) {
+                    Rect rect = Imgproc.boundingRect(contour);
+                    directArea += rect.area();
+                }
+            }
+            direct.stop();
+
+            contoursPerFrame = contours.size();
+            countFrame(copiedArea == directArea);
+            return input;
+        }
+    }
+}
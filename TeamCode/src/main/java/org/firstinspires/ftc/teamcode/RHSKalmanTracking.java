@@ -0,0 +1,80 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+import org.firstinspires.ftc.robotcore.external.hardware.camera.WebcamName;
+import org.openftc.easyopencv.OpenCvCamera;
+import org.openftc.easyopencv.OpenCvCameraFactory;
+import org.openftc.easyopencv.OpenCvCameraRotation;
+import org.openftc.easyopencv.OpenCvWebcam;
+
+/**
+ * Tracks the ContourPipeline target with a Kalman filter while the pipeline only runs on every
+ * processEvery-th frame (or sooner when the filter gets unsure). The position the drive code
+ * would align on is the filter's estimate at the moment it is read, so it updates every loop
+ * even though most frames are skipped. Compare the pipeline CPU with processEvery at 1.
+ */
+@Config
+@TeleOp(name = "OpenCV: Kalman Tracking", group = "camera")
+public class RHSKalmanTracking extends LinearOpMode {
+    public static int processEvery = 3;
+    public static double maxUncertaintyPx = 15;
+    public static double accelerationSigma = 400;  // px/s^2
+    public static double measurementSigma = 4;     // px
+    public static double dropTrackPx = 80;
+
+    OpenCvWebcam webcam;
+    PredictiveSkipPipeline skipPipeline;
+
+    @Override
+    public void runOpMode() {
+        int cameraMonitorViewId = hardwareMap.appContext.getResources().getIdentifier("cameraMonitorViewId", "id", hardwareMap.appContext.getPackageName());
+        webcam = OpenCvCameraFactory.getInstance().createWebcam(hardwareMap.get(WebcamName.class, "webcam1"), cameraMonitorViewId);
+
+        ContourPipeline pipeline = new ContourPipeline(0.0, 0.0, 0.0, 0.0);
+        if (!pipeline.useSavedCalibration()) {
+            telemetry.addData("Calibration", "None saved, using the default bounds");
+        }
+        KalmanRectTracker tracker = new KalmanRectTracker(accelerationSigma, measurementSigma, dropTrackPx);
+        skipPipeline = new PredictiveSkipPipeline(pipeline, tracker, processEvery, maxUncertaintyPx);
+        webcam.setPipeline(skipPipeline);
+
+        webcam.openCameraDeviceAsync(new OpenCvCamera.AsyncCameraOpenListener() {
+            @Override
+            public void onOpened() {
+                webcam.startStreaming(320, 240, OpenCvCameraRotation.UPRIGHT);
+            }
+
+            @Override
+            public void onError(int errorCode) {
+
+            }
+        });
+        telemetry.update();
+        waitForStart();
+
+        while (opModeIsActive()) {
+            skipPipeline.setProcessEvery(processEvery);
+            skipPipeline.setMaxUncertainty(maxUncertaintyPx);
+
+            // What alignment code would steer on
+            KalmanRectTracker.Estimate estimate = tracker.estimate(System.nanoTime());
+            if (estimate.tracking) {
+                telemetry.addData("Target", "x %.1f y %.1f (+/- %.1f px)",
+                        estimate.midpointX, estimate.midpointY, estimate.uncertainty);
+                telemetry.addData("Velocity px/s", "x %.0f y %.0f", estimate.velocityX, estimate.velocityY);
+            } else {
+                telemetry.addData("Target", "searching");
+            }
+
+            telemetry.addData("Frames processed / skipped", "%d / %d",
+                    skipPipeline.getFramesProcessed(), skipPipeline.getFramesSkipped());
+            telemetry.addData("Pipeline ms per processed frame", "%.2f", pipeline.getAnalysisTimeMs());
+            telemetry.addData("Camera pipeline ms per frame", "%.2f", (double) webcam.getPipelineTimeMs());
+            telemetry.update();
+            sleep(20);
+        }
+    }
+}
@@ -7,16 +7,19 @@ import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 
 import org.firstinspires.ftc.robotcore.external.hardware.camera.WebcamName;
 import org.opencv.core.Scalar;
-import org.openftc.easyopencv.OpenCvCamera;
 import org.openftc.easyopencv.OpenCvCameraFactory;
 import org.openftc.easyopencv.OpenCvCameraRotation;
+import org.openftc.easyopencv.OpenCvPipeline;
+import org.openftc.easyopencv.OpenCvWebcam;
 
 @Config
 @Autonomous(name="OpenCVFF", group="camera")
 
 public class RHSOpenCvFF extends LinearOpMode {
 
-    private OpenCvCamera webcam;
+    private OpenCvWebcam webcam;
+    private CameraGovernor governor;
+    private DashboardStreamer streamer;
     private ContourPipeline pipeline;
 
     private double crThreshHigh = 150;
@@ -24,10 +27,24 @@ public class RHSOpenCvFF extends LinearOpMode {
     private double cbThreshHigh = 255;
     private double cbThreshLow = 255;
 
-    private int minRectangleArea = 2000;
+    private int minRectangleArea = 2000; // at 640x480
+    private int pyramidScale = 2; // detect at 320x240, refine the barcode rect at 640x480
     private double leftBarcodeRangeBoundary = 0.3; //i.e 30% of the way across the frame from the left
     private double rightBarcodeRangeBoundary = 0.6; //i.e 60% of the way across the frame from the left
 
+    // The barcode position is voted on over the last votingFrames frames after start and locked
+    // once lockConfidence of them agree on a position. The camera is stopped after that, we
+    // already know the answer. During init the marker may not be placed yet, so init only shows
+    // what the current frame would vote.
+    public static int votingFrames = 15;
+    public static double lockConfidence = 0.8;
+    private BarcodeDecision barcode;
+
+    // How stale detections are when read, on FtcDashboard. The capture latency of the
+    // webcam can't be seen by the pipeline; measure it (film a ms clock) and set it here.
+    public static double captureLatencyMs = 0;
+    private LatencyMonitor latency = new LatencyMonitor("ContourPipeline");
+
     private double lowerRuntime = 0;
     private double upperRuntime = 0;
 
@@ -35,6 +52,21 @@ public class RHSOpenCvFF extends LinearOpMode {
     public static Scalar scalarLowerYCrCb = new Scalar(  0.0, 150.0, 120.0);
     public static Scalar scalarUpperYCrCb = new Scalar(255.0, 255.0, 255.0);
 
+    // Nobody watches the viewport or the dashboard stream during a match, so stop drawing
+    // the overlay (and streaming it) once started unless this is set.
+    public static boolean showOverlayDuringMatch = false;
+
+    // Place the marker in the middle of the frame during init and set this to work out the
+    // Cr/Cb bounds from it. Otherwise the bounds saved by the last calibration are used.
+    public static boolean autoCalibrate = false;
+    private static final int CALIBRATION_FRAMES = 10;
+    private double[] calibrationRegion = {0.4, 0.4, 0.6, 0.6};  // left, top, right, bottom
+
+    // Keep the last RECORDED_FRAMES raw camera frames in a ring file under FIRST/data/recordings
+    public static boolean recordFrames = false;
+    private static final int RECORDED_FRAMES = 150;
+    private RecordingPipeline recording;
+
     @Override
     public void runOpMode() throws InterruptedException
     {
@@ -43,66 +75,160 @@ public class RHSOpenCvFF extends LinearOpMode {
         webcam = OpenCvCameraFactory.getInstance().createWebcam(hardwareMap.get(WebcamName.class, "webcam1"), cameraMonitorViewId);
         //OpenCV Pipeline
 
-        pipeline = new ContourPipeline(0.2, 0.2, 0.2, 0.2);
+        pipeline = new ContourPipeline(0.2, 0.2, 0.2, 0.2, true);
+        pipeline.setPyramidScale(pyramidScale);
+        pipeline.setPipelined(true);
+        pipeline.setCaptureLatencyMs(captureLatencyMs);
+        barcode = new BarcodeDecision(minRectangleArea / (640.0 * 480.0), leftBarcodeRangeBoundary, rightBarcodeRangeBoundary, votingFrames, lockConfidence);
 
         pipeline.configureScalarLower(scalarLowerYCrCb.val[0],scalarLowerYCrCb.val[1],scalarLowerYCrCb.val[2]);
         pipeline.configureScalarUpper(scalarUpperYCrCb.val[0],scalarUpperYCrCb.val[1],scalarUpperYCrCb.val[2]);
+        if(autoCalibrate){
+            pipeline.startAutoCalibration(calibrationRegion[0], calibrationRegion[1], calibrationRegion[2], calibrationRegion[3], CALIBRATION_FRAMES);
+        }
+        else if(pipeline.useSavedCalibration()){
+            telemetry.addData("Calibration", "Using saved bounds");
+        }
 
-        webcam.setPipeline(pipeline);
-
-        // Webcam Streaming
-        webcam.openCameraDeviceAsync(new OpenCvCamera.AsyncCameraOpenListener() {
-            @Override
-            public void onOpened() {
-                webcam.startStreaming(640, 480, OpenCvCameraRotation.UPRIGHT);
-            }
-
-            @Override
-            public void onError(int errorCode) {
+        OpenCvPipeline cameraPipeline = pipeline;
+        if(recordFrames){
+            recording = new RecordingPipeline(pipeline, RECORDED_FRAMES);
+            cameraPipeline = recording;
+        }
 
-            }
-        });
+        // Webcam Streaming. Search for the marker at 640x480, drop to 320x240 at 15fps once
+        // it's in view and stop streaming once the barcode decision locks.
+        governor = new CameraGovernor(webcam, cameraPipeline, OpenCvCameraRotation.UPRIGHT);
+        governor.setResolution(CameraGovernor.State.SEARCHING, 640, 480);
+        governor.setResolution(CameraGovernor.State.TRACKING, 320, 240);
+        governor.setTargetFps(CameraGovernor.State.TRACKING, 15);
+        governor.open();
 
         // Only if you are using ftcdashboard
         FtcDashboard dashboard = FtcDashboard.getInstance();
         telemetry = dashboard.getTelemetry();
-        FtcDashboard.getInstance().startCameraStream(webcam, 10);
+        // Stream a half size preview; the encoding happens off the camera thread
+        streamer = new DashboardStreamer(0.5);
+        pipeline.setStreamer(streamer);
+        streamer.start(10);
 
-        waitForStart();
+        // Every way out of here, including stop during init, has to stop the camera and then free
+        // the streamer's thread and the recording's writer thread and mapping
+        try {
+            while(!isStarted() && !isStopRequested()){
+                ChromaCalibrator calibrator = pipeline.getCalibrator();
+                if(calibrator != null){
+                    if(calibrator.isDone()){
+                        telemetry.addData("Calibration", "Lower %s Upper %s", calibrator.getLower(), calibrator.getUpper());
+                    }
+                    else {
+                        telemetry.addData("Calibration", "%d of %d frames", calibrator.getFrames(), CALIBRATION_FRAMES);
+                    }
+                }
+                previewBarcode();
+                governor.update();
+                telemetry.update();
+                sleep(50);
+            }
 
-        if(isStopRequested()) return;
+            if(isStopRequested()){
+                return;
+            }
 
-        while (opModeIsActive())
-        {
-            if(pipeline.error){
-                telemetry.addData("Exception: ", pipeline.debug.getStackTrace());
+            if(!showOverlayDuringMatch){
+                streamer.stop();
+                webcam.pauseViewport();
+                pipeline.setOverlayEnabled(false);
             }
-            // Only use this line of the code when you want to find the lower and upper values, using Ftc Dashboard (https://acmerobotics.github.io/ftc-dashboard/gettingstarted)
-            // testing(pipeline);
 
-            // Watch our YouTube Tutorial for the better explanation
+            while (opModeIsActive())
+            {
+                if(pipeline.error){
+                    telemetry.addData("Exception: ", pipeline.debug.getStackTrace());
+                }
+                // Only use this line of the code when you want to find the lower and upper values, using Ftc Dashboard (https://acmerobotics.github.io/ftc-dashboard/gettingstarted)
+                // testing(pipeline);
 
-            double rectangleArea = pipeline.getRectArea();
+                // Watch our YouTube Tutorial for the better explanation
 
-            //Print out the area of the rectangle that is found.
-            telemetry.addData("Rectangle Area", rectangleArea);
+                // Read one snapshot so every value below comes from the same frame
+                ContourDetection detection = pipeline.getDetection();
+                double rectangleArea = detection.area;
 
-            //Check to see if the rectangle has a large enough area to be a marker.
-            if(rectangleArea > minRectangleArea){
-                //Then check the location of the rectangle to see which barcode it is in.
-                if(pipeline.getRectMidpointX() > rightBarcodeRangeBoundary * pipeline.getRectWidth()){
-                    telemetry.addData("Barcode Position", "Right");
-                }
-                else if(pipeline.getRectMidpointX() < leftBarcodeRangeBoundary * pipeline.getRectWidth()){
-                    telemetry.addData("Barcode Position", "Left");
+                telemetry.addData("Analysis time ms", pipeline.getAnalysisTimeMs());
+                telemetry.addData("Overlay time ms (saved when off)", pipeline.getOverlayTimeMs());
+
+                //Print out the area of the rectangle that is found.
+                telemetry.addData("Rectangle Area", rectangleArea);
+
+                voteOnBarcode();
+                governor.update();
+                latency.publishIfDue();
+                telemetry.addData("Camera", "%s, %d restarts", governor.getState(), governor.getRestarts());
+                for(CameraGovernor.State state : CameraGovernor.State.values()){
+                    telemetry.addData("CPU cores / loop Hz / restarts " + state, "%.2f / %.0f / %d",
+                            governor.getCpuLoad(state), governor.getLoopHz(state), governor.getRestarts(state));
                 }
-                else {
-                    telemetry.addData("Barcode Position", "Center");
+
+                if(recording != null){
+                    if(recording.getError() != null){
+                        telemetry.addData("Recording failed", recording.getError().getMessage());
+                    }
+                    telemetry.addData("Frames recorded", recording.getFramesWritten());
+                    telemetry.addData("Frames dropped", recording.getFramesDropped());
                 }
+
+                telemetry.update();
+            }
+        }
+        finally {
+            // No frame may be inside the recorder while it is closed
+            governor.close();
+            streamer.close();
+            if(recording != null){
+                recording.close();
             }
+        }
+    }
+
+    /**
+     * Show where the latest frame puts the marker and let the camera follow it, without voting.
+     */
+    private void previewBarcode(){
+        if(pipeline.isCalibrating()){
+            return;
+        }
+        BarcodeDecision.Position position = barcode.classify(pipeline.getDetection());
+        governor.acquired(position != BarcodeDecision.Position.NONE);
+        telemetry.addData("Barcode Position (not voting until start)", position);
+    }
 
-            telemetry.update();
+    /**
+     * Count the latest frame towards the barcode decision, lower the camera resolution while
+     * the marker is in view and pause the camera once the decision locks.
+     * Nothing is counted while auto calibration is still working out the bounds.
+     */
+    private void voteOnBarcode(){
+        if(pipeline.isCalibrating()){
+            return;
+        }
+        boolean wasLocked = barcode.isLocked();
+        ContourDetection detection = latency.read(pipeline.getDetection());
+        // Nothing is driven from the detection here, so there is no commandSent(); code that sets
+        // a motor power from it calls that right after setPower()
+        boolean locked = barcode.update(detection);
+        if(locked){
+            if(!wasLocked){
+                // Call barcode.reset() and governor.resume() when the camera is needed again
+                streamer.stop();
+                governor.pause();
+            }
+        }
+        else {
+            governor.acquired(barcode.classify(detection) != BarcodeDecision.Position.NONE);
         }
+        telemetry.addData("Barcode Position", barcode.getPosition());
+        telemetry.addData("Barcode Confidence", "%.2f%s", barcode.getConfidence(), barcode.isLocked() ? " (locked)" : "");
     }
     public void testing(ContourPipeline pipeline){
         if(lowerRuntime + 0.05 < getRuntime()){
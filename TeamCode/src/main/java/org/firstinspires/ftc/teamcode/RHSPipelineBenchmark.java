@@ -0,0 +1,106 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+import org.opencv.core.Mat;
+import org.openftc.easyopencv.OpenCvCameraFactory;
+import org.openftc.easyopencv.OpenCvPipeline;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks ContourPipeline and SamplePipeline (each with and without the fused chroma kernel),
+ * StageSwitchingPipeline and a VisionGraph running barcode and freight detection together over
+ * recorded PNG frames at 320x240 and 640x480, no camera needed. Copy the frames to
+ * FIRST/data/frames on the hub first.
+ *
+ * Results go to telemetry and to the robot log. The same pipelines can be run on a workstation
+ * under JMH with the PipelineBench build next to TeamCode.
+ */
+@TeleOp(name = "OpenCV: Pipeline Benchmark", group = "camera")
+public class RHSPipelineBenchmark extends LinearOpMode {
+    static final File FRAME_DIRECTORY = new File(AppUtil.ROBOT_DATA_DIR, "frames");
+    static final int MEASURED_FRAMES = 300;
+    static final int[][] RESOLUTIONS = {{320, 240}, {640, 480}};
+
+    @Override
+    public void runOpMode() {
+        // EasyOpenCV loads the OpenCV native library when the factory is first used
+        OpenCvCameraFactory.getInstance();
+
+        telemetry.addData("Frames from", FRAME_DIRECTORY);
+        telemetry.update();
+        waitForStart();
+
+        List<PipelineBenchmark.Result> results = new ArrayList<>();
+        FrameSource source = new PngDirectoryFrameSource(FRAME_DIRECTORY, 30);
+        for (int[] resolution : RESOLUTIONS) {
+            if (isStopRequested()) {
+                break;
+            }
+            source.rewind();
+            List<Mat> frames = PipelineBenchmark.loadFrames(source, resolution[0], resolution[1]);
+            if (frames.isEmpty()) {
+                telemetry.addData("Error", "No PNG frames in %s", FRAME_DIRECTORY);
+                break;
+            }
+
+            results.add(run("ContourPipeline", newContourPipeline(), frames));
+            results.add(run("ContourPipeline fused", newFusedContourPipeline(), frames));
+            results.add(run("SamplePipeline", new SamplePipeline(), frames));
+            results.add(run("SamplePipeline fused", newFusedSamplePipeline(), frames));
+            results.add(run("StageSwitchingPipeline", new StageSwitchingPipeline(), frames));
+            results.add(run("VisionGraph barcode+freight", newVisionGraph(), frames));
+            PipelineBenchmark.releaseFrames(frames);
+        }
+        source.close();
+
+        for (PipelineBenchmark.Result result : results) {
+            telemetry.addLine(result.toString());
+        }
+        telemetry.update();
+
+        while (opModeIsActive()) {
+            sleep(100);
+        }
+    }
+
+    private ContourPipeline newContourPipeline() {
+        ContourPipeline pipeline = new ContourPipeline(0.2, 0.2, 0.2, 0.2);
+        // Match what runs during a match: nobody is watching the overlay
+        pipeline.setOverlayEnabled(false);
+        return pipeline;
+    }
+
+    private ContourPipeline newFusedContourPipeline() {
+        ContourPipeline pipeline = newContourPipeline();
+        pipeline.setFusedChroma(true);
+        return pipeline;
+    }
+
+    private SamplePipeline newFusedSamplePipeline() {
+        SamplePipeline pipeline = new SamplePipeline();
+        pipeline.setFusedChroma(true);
+        return pipeline;
+    }
+
+    private VisionGraph newVisionGraph() {
+        VisionGraph graph = new VisionGraph(new BarcodeNode(0.2, 0.2, 0.2, 0.2), new FreightNode());
+        graph.setOverlayEnabled(false);
+        return graph;
+    }
+
+    private PipelineBenchmark.Result run(String name, OpenCvPipeline pipeline, List<Mat> frames) {
+        telemetry.addData("Running", "%s at %dx%d", name, frames.get(0).cols(), frames.get(0).rows());
+        telemetry.update();
+
+        PipelineBenchmark.Result result = PipelineBenchmark.run(name, pipeline, frames, MEASURED_FRAMES);
+        RobotLog.ii("PipelineBenchmark", result.toString());
+        return result;
+    }
+}
@@ -25,11 +25,7 @@ import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
 
 import org.firstinspires.ftc.robotcore.external.hardware.camera.WebcamName;
-import org.opencv.core.Core;
-import org.opencv.core.Mat;
 import org.opencv.core.MatOfPoint;
-import org.opencv.core.Scalar;
-import org.opencv.imgproc.Imgproc;
 import org.openftc.easyopencv.OpenCvCamera;
 import org.openftc.easyopencv.OpenCvCameraFactory;
 import org.openftc.easyopencv.OpenCvCameraRotation;
@@ -37,7 +33,6 @@ import org.openftc.easyopencv.OpenCvInternalCamera;
 import org.openftc.easyopencv.OpenCvPipeline;
 import org.openftc.easyopencv.OpenCvWebcam;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -51,6 +46,7 @@ public class RHSPipelineStageSwitching extends LinearOpMode
     OpenCvCamera phoneCam;
     OpenCvWebcam webcam;
     StageSwitchingPipeline stageSwitchingPipeline;
+    volatile int numContoursFound;
 
     @Override
     public void runOpMode()
@@ -67,6 +63,21 @@ public class RHSPipelineStageSwitching extends LinearOpMode
         webcam = OpenCvCameraFactory.getInstance().createWebcam(hardwareMap.get(WebcamName.class, "webcam1"), cameraMonitorViewId);
 
         stageSwitchingPipeline = new StageSwitchingPipeline();
+
+        /*
+         * The pipeline only finds contours when something needs them, so register for
+         * them here. Without a listener, getNumContoursFound() only updates while the
+         * viewport shows the contours stage.
+         */
+        stageSwitchingPipeline.addContourListener(new StageSwitchingPipeline.ContourListener()
+        {
+            @Override
+            public void onContoursFound(List<MatOfPoint> contours)
+            {
+                numContoursFound = contours.size();
+            }
+        });
+
         webcam.openCameraDeviceAsync(new OpenCvCamera.AsyncCameraOpenListener()
 //          phoneCam.openCameraDeviceAsync(new OpenCvCamera.AsyncCameraOpenListener()
         {
@@ -92,103 +103,9 @@ public class RHSPipelineStageSwitching extends LinearOpMode
 
         while (opModeIsActive())
         {
-            telemetry.addData("Num contours found", stageSwitchingPipeline.getNumContoursFound());
+            telemetry.addData("Num contours found", numContoursFound);
             telemetry.update();
             sleep(100);
         }
     }
-
-    /*
-     * With this pipeline, we demonstrate how to change which stage of
-     * is rendered to the viewport when the viewport is tapped. This is
-     * particularly useful during pipeline development. We also show how
-     * to get data from the pipeline to your OpMode.
-     */
-    static class StageSwitchingPipeline extends OpenCvPipeline
-    {
-        Mat yCbCrChan2Mat = new Mat();
-        Mat thresholdMat = new Mat();
-        Mat contoursOnFrameMat = new Mat();
-        List<MatOfPoint> contoursList = new ArrayList<>();
-        int numContoursFound;
-
-        enum Stage
-        {
-            YCbCr_CHAN2,
-            THRESHOLD,
-            CONTOURS_OVERLAYED_ON_FRAME,
-            RAW_IMAGE,
-        }
-
-        private Stage stageToRenderToViewport = Stage.YCbCr_CHAN2;
-        private Stage[] stages = Stage.values();
-
-        @Override
-        public void onViewportTapped()
-        {
-            /*
-             * Note that this method is invoked from the UI thread
-             * so whatever we do here, we must do quickly.
-             */
-
-            int currentStageNum = stageToRenderToViewport.ordinal();
-
-            int nextStageNum = currentStageNum + 1;
-
-            if(nextStageNum >= stages.length)
-            {
-                nextStageNum = 0;
-            }
-
-            stageToRenderToViewport = stages[nextStageNum];
-        }
-
-        @Override
-        public Mat processFrame(Mat input)
-        {
-            contoursList.clear();
-
-            /*
-             * This pipeline finds the contours of yellow blobs such as the Gold Mineral
-             * from the Rover Ruckus game.
-             */
-            Imgproc.cvtColor(input, yCbCrChan2Mat, Imgproc.COLOR_RGB2YCrCb);
-            Core.extractChannel(yCbCrChan2Mat, yCbCrChan2Mat, 2);
-            Imgproc.threshold(yCbCrChan2Mat, thresholdMat, 102, 255, Imgproc.THRESH_BINARY_INV);
-            Imgproc.findContours(thresholdMat, contoursList, new Mat(), Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
-            numContoursFound = contoursList.size();
-            input.copyTo(contoursOnFrameMat);
-            Imgproc.drawContours(contoursOnFrameMat, contoursList, -1, new Scalar(0, 0, 255), 3, 8);
-
-            switch (stageToRenderToViewport)
-            {
-                case YCbCr_CHAN2:
-                {
-                    return yCbCrChan2Mat;
-                }
-
-                case THRESHOLD:
-                {
-                    return thresholdMat;
-                }
-
-                case CONTOURS_OVERLAYED_ON_FRAME:
-                {
-                    return contoursOnFrameMat;
-                }
-
-                case RAW_IMAGE:
-
-                default:
-                {
-                    return input;
-                }
-            }
-        }
-
-        public int getNumContoursFound()
-        {
-            return numContoursFound;
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,114 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+import org.openftc.easyopencv.OpenCvPipeline;
+
+/**
+ * Compares sampling the Cb channel with Core.mean on a submat per region (what SamplePipeline
+ * did) against one integral image per frame and O(1) lookups (RegionSampler), for grids of 1 to
+ * 256 regions over the same live frames. The integral image cost should stay flat.
+ */
+@TeleOp(name = "OpenCV: Region Sampling Benchmark", group = "camera")
+public class RHSRegionSamplingBenchmark extends CameraBenchmark {
+    static final int[] GRID_SIZES = {1, 2, 3, 6, 8, 16};  // regions per side
+
+    BenchmarkPipeline pipeline;
+
+    public RHSRegionSamplingBenchmark() {
+        super(320, 240);
+    }
+
+    @Override
+    protected OpenCvPipeline createPipeline() {
+        pipeline = new BenchmarkPipeline();
+        return pipeline;
+    }
+
+    @Override
+    protected void addTelemetry() {
+        telemetry.addData("Frames", pipeline.frames);
+        telemetry.addData("Frames where the paths disagree", pipeline.mismatches);
+        for (int i = 0; i < GRID_SIZES.length; i++) {
+            int regions = GRID_SIZES[i] * GRID_SIZES[i];
+            telemetry.addData(regions + " regions", "mean %.3f ms  integral %.3f ms",
+                    pipeline.mean[i].getMs(), pipeline.integral[i].getMs());
+        }
+    }
+
+    static class BenchmarkPipeline extends ComparisonPipeline {
+        Mat yCrCb = new Mat();
+        Mat cb = new Mat();
+        RegionSampler sampler = new RegionSampler();
+        Rect[][] grids = new Rect[GRID_SIZES.length][];
+        double[] means = new double[GRID_SIZES[GRID_SIZES.length - 1] * GRID_SIZES[GRID_SIZES.length - 1]];
+
+        final Section[] mean = new Section[GRID_SIZES.length];
+        final Section[] integral = new Section[GRID_SIZES.length];
+
+        BenchmarkPipeline() {
+            for (int i = 0; i < GRID_SIZES.length; i++) {
+                mean[i] = new Section();
+                integral[i] = new Section();
+            }
+        }
+
+        @Override
+        public void init(Mat input) {
+            for (int i = 0; i < GRID_SIZES.length; i++) {
+                int n = GRID_SIZES[i];
+                grids[i] = new Rect[n * n];
+                for (int r = 0; r < n; r++) {
+                    for (int c = 0; c < n; c++) {
+                        grids[i][r * n + c] = new Rect(input.cols() * c / n, input.rows() * r / n,
+                                input.cols() / n, input.rows() / n);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Mat processFrame(Mat input) {
+            Imgproc.cvtColor(input, yCrCb, Imgproc.COLOR_RGB2YCrCb);
+            Core.extractChannel(yCrCb, cb, 2);
+
+            boolean agree = true;
+            for (int i = 0; i < grids.length; i++) {
+                Rect[] grid = grids[i];
+
+                // Old path: a submat and a full pass per region
+                double total = 0;
+                mean[i].start();
+                for (Rect rect : grid) {
+                    Mat region = cb.submat(rect);
+                    total += Core.mean(region).val[0];
+                    region.release();
+                }
+                mean[i].stop();
+
+                // New path: one pass for the whole frame, then four lookups per region
+                integral[i].start();
+                sampler.update(cb);
+                for (int r = 0; r < grid.length; r++) {
+                    means[r] = sampler.mean(grid[r]);
+                }
+                integral[i].stop();
+
+                for (int r = 0; r < grid.length; r++) {
+                    total -= means[r];
+                }
+                // Both paths must agree on the means
+                if (Math.abs(total) > 1e-6 * grid.length * 255) {
+                    agree = false;
+                }
+            }
+
+            countFrame(agree);
+            return input;
+        }
+    }
+}
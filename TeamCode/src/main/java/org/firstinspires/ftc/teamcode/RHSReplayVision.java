@@ -0,0 +1,128 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.opencv.core.Mat;
+import org.openftc.easyopencv.OpenCvCameraFactory;
+import org.openftc.easyopencv.OpenCvPipeline;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Replays the newest recording from FIRST/data/recordings (or, if there is none, the PNGs in
+ * FIRST/data/frames) through ContourPipeline and SamplePipeline as fast as they
+ * go. Every frame's result goes to the robot log so runs can be diffed for detection changes,
+ * and the throughput shows on telemetry.
+ */
+@TeleOp(name = "OpenCV: Replay Vision", group = "camera")
+public class RHSReplayVision extends LinearOpMode {
+    static final String TAG = "ReplayVision";
+    static final double PNG_FRAMES_PER_SECOND = 30;
+
+    @Override
+    public void runOpMode() {
+        // EasyOpenCV loads the OpenCV native library when the factory is first used
+        OpenCvCameraFactory.getInstance();
+
+        telemetry.addData("Recording", describeSource());
+        telemetry.update();
+        waitForStart();
+
+        final ContourPipeline contourPipeline = new ContourPipeline(0.2, 0.2, 0.2, 0.2);
+        contourPipeline.setOverlayEnabled(false);
+        ReplayCamera.FrameListener contourListener = new ReplayCamera.FrameListener() {
+            @Override
+            public void onFrameProcessed(long frameIndex, long captureTimeNanos, Mat output) {
+                ContourDetection detection = contourPipeline.getDetection();
+                RobotLog.ii(TAG, "contour %d x=%d y=%d w=%d h=%d", frameIndex,
+                        detection.x, detection.y, detection.width, detection.height);
+            }
+        };
+        String contourResult = replay("ContourPipeline", contourPipeline, contourListener);
+        if (!opModeIsActive()) {
+            return;
+        }
+
+        final SamplePipeline samplePipeline = new SamplePipeline();
+        samplePipeline.setOverlayEnabled(false);
+        ReplayCamera.FrameListener sampleListener = new ReplayCamera.FrameListener() {
+            @Override
+            public void onFrameProcessed(long frameIndex, long captureTimeNanos, Mat output) {
+                RobotLog.ii(TAG, "sample %d type=%s average=%d", frameIndex,
+                        samplePipeline.getType(), samplePipeline.getAverage());
+            }
+        };
+        String sampleResult = replay("SamplePipeline", samplePipeline, sampleListener);
+
+        while (opModeIsActive()) {
+            telemetry.addLine(contourResult);
+            telemetry.addLine(sampleResult);
+            telemetry.update();
+            sleep(100);
+        }
+    }
+
+    private String replay(String name, OpenCvPipeline pipeline, ReplayCamera.FrameListener listener) {
+        FrameSource source = openSource();
+        if (source == null) {
+            return name + ": no recording found";
+        }
+        ReplayCamera camera = new ReplayCamera(source);
+        camera.setPipeline(pipeline);
+        camera.setFrameListener(listener);
+
+        // Replay on the camera's own thread so stop is still seen while a long recording runs
+        camera.startStreaming(ReplayCamera.Pacing.AS_FAST_AS_POSSIBLE);
+        while (opModeIsActive() && camera.isStreaming()) {
+            telemetry.addData("Replaying", "%s, %d frames, %.1f fps", name, camera.getFrameCount(), camera.getFps());
+            telemetry.update();
+            sleep(100);
+        }
+        boolean stopped = camera.isStreaming();
+        camera.stopStreaming();
+
+        LatencyHistogram times = camera.getPipelineTimeHistogram();
+        String result = String.format("%s: %d frames, %.1f fps, p50 %.2f ms, p99 %.2f ms%s", name,
+                camera.getFrameCount(), camera.getFps(),
+                times.getPercentileNanos(50) / 1e6, times.getPercentileNanos(99) / 1e6,
+                stopped ? " (stopped)" : "");
+        RobotLog.ii(TAG, result);
+        camera.close();
+        return result;
+    }
+
+    private FrameSource openSource() {
+        File recording = newestRecording();
+        if (recording != null) {
+            try {
+                return new RingFileFrameSource(recording);
+            } catch (IOException e) {
+                RobotLog.ee(TAG, e, "Opening %s", recording);
+            }
+        }
+        PngDirectoryFrameSource pngs = new PngDirectoryFrameSource(RHSPipelineBenchmark.FRAME_DIRECTORY, PNG_FRAMES_PER_SECOND);
+        return pngs.getFrameCount() > 0 ? pngs : null;
+    }
+
+    private String describeSource() {
+        File recording = newestRecording();
+        return recording != null ? recording.getName() : RHSPipelineBenchmark.FRAME_DIRECTORY.getPath();
+    }
+
+    private static File newestRecording() {
+        File[] recordings = RecordingPipeline.RECORDING_DIRECTORY.listFiles();
+        File newest = null;
+        if (recordings != null) {
+            for (File recording : recordings) {
+                if (recording.getName().endsWith(FrameRecorder.FILE_EXTENSION)
+                        && (newest == null || recording.lastModified() > newest.lastModified())) {
+                    newest = recording;
+                }
+            }
+        }
+        return newest;
+    }
+}
@@ -0,0 +1,62 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import com.qualcomm.robotcore.util.ElapsedTime;
+
+import org.openftc.easyopencv.OpenCvPipeline;
+
+/**
+ * Runs ContourPipeline with 1 to 4 segmentation strips in turn and shows the average analysis
+ * time of each, so we can see how far the parallel mode scales on the Control Hub.
+ */
+@TeleOp(name = "OpenCV: Strip Scaling Benchmark", group = "camera")
+public class RHSStripScalingBenchmark extends CameraBenchmark {
+    static final int MAX_WORKERS = 4;
+    static final double SECONDS_PER_RUN = 5.0;
+
+    ContourPipeline pipeline;
+
+    private final double[] analysisMs = new double[MAX_WORKERS + 1];
+    private final double[] fps = new double[MAX_WORKERS + 1];
+    private final ElapsedTime runTime = new ElapsedTime();
+    private int workers = 1;
+
+    public RHSStripScalingBenchmark() {
+        super(640, 480);
+    }
+
+    @Override
+    protected OpenCvPipeline createPipeline() {
+        pipeline = new ContourPipeline(0.0, 0.0, 0.0, 0.0);
+        pipeline.setOverlayEnabled(false);
+        return pipeline;
+    }
+
+    @Override
+    protected void onStart() {
+        pipeline.setParallelStrips(workers);
+        runTime.reset();
+    }
+
+    @Override
+    protected void addTelemetry() {
+        if (workers <= MAX_WORKERS && runTime.seconds() > SECONDS_PER_RUN) {
+            analysisMs[workers] = pipeline.getAnalysisTimeMs();
+            fps[workers] = webcam.getFps();
+            workers++;
+            if (workers <= MAX_WORKERS) {
+                pipeline.setParallelStrips(workers);
+            }
+            runTime.reset();
+        }
+
+        for (int i = 1; i <= MAX_WORKERS; i++) {
+            if (analysisMs[i] > 0) {
+                telemetry.addData(i + " workers", "%.2f ms  %.1f fps  %.2fx",
+                        analysisMs[i], fps[i], analysisMs[1] / analysisMs[i]);
+            } else {
+                telemetry.addData(i + " workers", i == workers ? "running" : "waiting");
+            }
+        }
+    }
+}
@@ -32,21 +32,24 @@ import org.opencv.imgproc.Imgproc;
 import org.openftc.easyopencv.OpenCvCamera;
 import org.openftc.easyopencv.OpenCvCameraFactory;
 import org.openftc.easyopencv.OpenCvCameraRotation;
-import org.openftc.easyopencv.OpenCvTracker;
-import org.openftc.easyopencv.OpenCvTrackerApiPipeline;
 import org.openftc.easyopencv.OpenCvWebcam;
 
 /**
- * In this sample, we demonstrate how to use the {@link OpenCvTrackerApiPipeline()}
- * class to run multiple {@link OpenCvTracker} instances on each frame from the camera.
+ * In this sample, we demonstrate how to use the {@link ParallelTrackerPipeline}
+ * class to run multiple {@link LayeredTracker} instances on each frame from the camera.
+ * Unlike EasyOpenCV's OpenCvTrackerApiPipeline, the trackers run at the same time, so
+ * adding one only slows the frame down if it is slower than the others.
  */
 @TeleOp(name = "OpenCV Tracker", group = "camera")
 public class RHSTrackerApi extends LinearOpMode {
     OpenCvCamera phoneCam;
     OpenCvWebcam webcam;
-    OpenCvTrackerApiPipeline trackerApiPipeline;
+    ParallelTrackerPipeline trackerPipeline;
     UselessColorBoxDrawingTracker tracker1, tracker2, tracker3;
 
+    // The Control Hub has four cores; leave one for the OpMode and the SDK
+    static final int MAX_CONCURRENT_TRACKERS = 3;
+
     @Override
     public void runOpMode() {
         /**
@@ -61,13 +64,13 @@ public class RHSTrackerApi extends LinearOpMode {
         webcam = OpenCvCameraFactory.getInstance().createWebcam(hardwareMap.get(WebcamName.class, "webcam1"), cameraMonitorViewId);
 
         /**
-         * Create an instance of the {@link OpenCvTrackerApiPipeline}
-         * pipeline (included with EasyOpenCV), and tell the camera
-         * to use it.
+         * Create an instance of the {@link ParallelTrackerPipeline}
+         * pipeline, running up to MAX_CONCURRENT_TRACKERS at once,
+         * and tell the camera to use it.
          */
-        trackerApiPipeline = new OpenCvTrackerApiPipeline();
-        //phoneCam.setPipeline(trackerApiPipeline);
-        webcam.setPipeline(trackerApiPipeline);
+        trackerPipeline = new ParallelTrackerPipeline(MAX_CONCURRENT_TRACKERS);
+        //phoneCam.setPipeline(trackerPipeline);
+        webcam.setPipeline(trackerPipeline);
         webcam.openCameraDeviceAsync(new OpenCvCamera.AsyncCameraOpenListener() {
             @Override
             public void onOpened() {
@@ -97,54 +100,68 @@ public class RHSTrackerApi extends LinearOpMode {
         /*
          * Create some trackers we want to run
          */
-        tracker1 = new UselessColorBoxDrawingTracker(new Scalar(255, 0, 0));
-        tracker2 = new UselessColorBoxDrawingTracker(new Scalar(0, 255, 0));
-        tracker3 = new UselessColorBoxDrawingTracker(new Scalar(0, 0, 255));
+        tracker1 = new UselessColorBoxDrawingTracker(new Scalar(255, 0, 0, 255), 4);
+        tracker2 = new UselessColorBoxDrawingTracker(new Scalar(0, 255, 0, 255), 5);
+        tracker3 = new UselessColorBoxDrawingTracker(new Scalar(0, 0, 255, 255), 6);
 
         /*
          * Add those trackers to the pipeline. All trackers added to the
-         * trackerApiPipeline will be run upon receipt of a frame from the
-         * camera. Note: the trackerApiPipeline will handle switching
-         * the viewport view on tap between the output of each of the trackers
-         * for you.
+         * trackerPipeline will be run upon receipt of a frame from the
+         * camera. Note: every tracker draws on its own layer, and the
+         * trackerPipeline shows all of the layers on top of the frame.
          */
-        trackerApiPipeline.addTracker(tracker1);
-        trackerApiPipeline.addTracker(tracker2);
-        trackerApiPipeline.addTracker(tracker3);
+        trackerPipeline.addTracker(tracker1);
+        trackerPipeline.addTracker(tracker2);
+        trackerPipeline.addTracker(tracker3);
 
         waitForStart();
 
         while (opModeIsActive()) {
             /*
              * If you later want to stop running a tracker on each frame,
-             * you can remove it from the trackerApiPipeline like so:
+             * you can remove it from the trackerPipeline like so:
+             */
+            //trackerPipeline.removeTracker(tracker1);
+
+            /*
+             * The slowest tracker sets the frame rate
              */
-            //trackerApiPipeline.removeTracker(tracker1);
+            telemetry.addData("Frame ms", "%.2f", trackerPipeline.getAnalysisTimeMs());
+            telemetry.addData("Tracker 1 ms", "%.2f", tracker1.getTimeMs());
+            telemetry.addData("Tracker 2 ms", "%.2f", tracker2.getTimeMs());
+            telemetry.addData("Tracker 3 ms", "%.2f", tracker3.getTimeMs());
+            telemetry.update();
 
             sleep(100);
         }
     }
 
-    class UselessColorBoxDrawingTracker extends OpenCvTracker {
+    class UselessColorBoxDrawingTracker extends LayeredTracker {
         Scalar color;
+        int inset;
 
-        UselessColorBoxDrawingTracker(Scalar color) {
+        /*
+         * Each tracker draws its box at a different size so all of them show
+         */
+        UselessColorBoxDrawingTracker(Scalar color, int inset) {
             this.color = color;
+            this.inset = inset;
         }
 
         @Override
-        public Mat processFrame(Mat input) {
+        protected void processFrame(Mat frame, Mat layer) {
+            if (layer == null) {
+                return;
+            }
             Imgproc.rectangle(
-                    input,
+                    layer,
                     new Point(
-                            input.cols() / 4,
-                            input.rows() / 4),
+                            frame.cols() / inset,
+                            frame.rows() / inset),
                     new Point(
-                            input.cols() * (3f / 4f),
-                            input.rows() * (3f / 4f)),
+                            frame.cols() * (inset - 1f) / inset,
+                            frame.rows() * (inset - 1f) / inset),
                     color, 4);
-
-            return input;
         }
     }
 }
\ No newline at end of file
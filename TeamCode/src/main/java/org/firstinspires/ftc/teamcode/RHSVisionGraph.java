@@ -0,0 +1,62 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+import org.firstinspires.ftc.robotcore.external.hardware.camera.WebcamName;
+import org.openftc.easyopencv.OpenCvCamera;
+import org.openftc.easyopencv.OpenCvCameraFactory;
+import org.openftc.easyopencv.OpenCvCameraRotation;
+
+/**
+ * Barcode detection and freight classification on the same frames through one VisionGraph.
+ * Both share the YCrCb conversion and run at the same time, so the frame should cost about as
+ * much as the slower of the two nodes plus the shared intermediates.
+ */
+@TeleOp(name = "OpenCV: Vision Graph", group = "camera")
+public class RHSVisionGraph extends LinearOpMode {
+    OpenCvCamera webcam;
+    BarcodeNode barcode;
+    FreightNode freight;
+    VisionGraph graph;
+
+    @Override
+    public void runOpMode() {
+        int cameraMonitorViewId = hardwareMap.appContext.getResources().getIdentifier("cameraMonitorViewId", "id", hardwareMap.appContext.getPackageName());
+        webcam = OpenCvCameraFactory.getInstance().createWebcam(hardwareMap.get(WebcamName.class, "webcam1"), cameraMonitorViewId);
+
+        barcode = new BarcodeNode(0.2, 0.2, 0.2, 0.2);  // the borders RHSOpenCvFF gives ContourPipeline
+        freight = new FreightNode();
+        graph = new VisionGraph(barcode, freight);
+        webcam.setPipeline(graph);
+
+        webcam.openCameraDeviceAsync(new OpenCvCamera.AsyncCameraOpenListener() {
+            @Override
+            public void onOpened() {
+                webcam.startStreaming(320, 240, OpenCvCameraRotation.UPRIGHT);
+            }
+
+            @Override
+            public void onError(int errorCode) {
+
+            }
+        });
+        waitForStart();
+
+        StageTimer timer = graph.getStageTimer();
+        while (opModeIsActive()) {
+            ContourDetection detection = barcode.getDetection();
+            telemetry.addData("Barcode rect", "%s area %.0f", detection.getRect(), detection.area);
+            telemetry.addData("Freight", "%s (%d)", freight.getType(), freight.getAverage());
+
+            telemetry.addData("Frame ms", "%.2f", graph.getAnalysisTimeMs());
+            for (int i = 0; i < timer.getStageCount(); i++) {
+                telemetry.addData(timer.getStageName(i) + " p50 ms", "%.2f",
+                        timer.getHistogram(i).getPercentileNanos(50) / 1e6);
+            }
+            telemetry.addData("Pooled Mats", graph.getAllocationCount());
+            telemetry.update();
+            sleep(100);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+import org.opencv.core.Mat;
+import org.openftc.easyopencv.OpenCvPipeline;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Wraps any pipeline and hands each raw frame to a {@link FrameRecorder} before the wrapped
+ * pipeline gets to draw on it. Everything else is passed straight through.
+ *
+ * The recorder is opened on the first frame, so its slots are sized for the Mats the camera
+ * really delivers rather than a guess. It records into one of {@link #KEPT_RECORDINGS} fixed
+ * files in {@link #RECORDING_DIRECTORY}, overwriting the oldest, so runs don't pile up files.
+ * Call {@link #close()} on every way out of the OpMode.
+ */
+public class RecordingPipeline extends OpenCvPipeline {
+    public static final File RECORDING_DIRECTORY = new File(AppUtil.ROBOT_DATA_DIR, "recordings");
+    public static final int KEPT_RECORDINGS = 3;
+
+    private final OpenCvPipeline pipeline;
+    private final int slotCount;
+
+    private volatile FrameRecorder recorder;
+    private volatile IOException error;
+    private boolean closed = false;  // guarded by this
+
+    /**
+     * @param slotCount how many of the newest frames the recording keeps
+     */
+    public RecordingPipeline(OpenCvPipeline pipeline, int slotCount) {
+        this.pipeline = pipeline;
+        this.slotCount = slotCount;
+    }
+
+    @Override
+    public void init(Mat input) {
+        pipeline.init(input);
+    }
+
+    @Override
+    public Mat processFrame(Mat input) {
+        FrameRecorder current = recorder;
+        if (current == null && error == null) {
+            current = open(input);
+        }
+        if (current != null) {
+            current.offer(input, System.nanoTime());
+        }
+        return pipeline.processFrame(input);
+    }
+
+    @Override
+    public void onViewportTapped() {
+        pipeline.onViewportTapped();
+    }
+
+    private synchronized FrameRecorder open(Mat first) {
+        if (closed) {
+            return null;
+        }
+        try {
+            AppUtil.getInstance().ensureDirectoryExists(RECORDING_DIRECTORY);
+            recorder = new FrameRecorder(FrameRecorder.rotatingFile(RECORDING_DIRECTORY, KEPT_RECORDINGS),
+                    slotCount, FrameRecorder.slotBytesFor(first));
+        } catch (IOException e) {
+            error = e;
+        }
+        return recorder;
+    }
+
+    /**
+     * Stop recording and close the file. Frames after this are only passed through.
+     */
+    public synchronized void close() {
+        closed = true;
+        FrameRecorder current = recorder;
+        recorder = null;
+        error = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    public OpenCvPipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * @return why the recording could not be opened, or null
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    public long getFramesWritten() {
+        FrameRecorder current = recorder;
+        return current != null ? current.getFramesWritten() : 0;
+    }
+
+    public long getFramesDropped() {
+        FrameRecorder current = recorder;
+        return current != null ? current.getFramesDropped() : 0;
+    }
+}
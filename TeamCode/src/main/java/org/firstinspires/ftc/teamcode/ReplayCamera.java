@@ -0,0 +1,188 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Mat;
+import org.openftc.easyopencv.OpenCvPipeline;
+
+/**
+ * Feeds recorded frames into an {@link OpenCvPipeline} the way a camera would, so pipelines can
+ * be profiled and regression tested without hardware. Frames are decoded into one Mat that is
+ * reused for the whole replay; the pipeline gets {@link OpenCvPipeline#init(Mat)} on the first
+ * frame and {@link OpenCvPipeline#processFrame(Mat)} on every frame, like with EasyOpenCV.
+ *
+ * Frames can be paced at the rate they were recorded, or as fast as the pipeline goes.
+ */
+public class ReplayCamera {
+    public enum Pacing {
+        REAL_TIME,
+        AS_FAST_AS_POSSIBLE
+    }
+
+    /**
+     * Called after the pipeline has processed each frame, e.g. to compare its results against
+     * what is expected for that frame.
+     */
+    public interface FrameListener {
+        void onFrameProcessed(long frameIndex, long captureTimeNanos, Mat output);
+    }
+
+    private final FrameSource source;
+    private final Mat frame = new Mat();
+    private final LatencyHistogram pipelineTime = new LatencyHistogram();
+
+    private volatile OpenCvPipeline pipeline;
+    private volatile FrameListener listener;
+    private volatile boolean looping = false;
+    private volatile boolean streaming = false;
+    private Thread thread;
+
+    private volatile long frameCount = 0;
+    private volatile double fps = 0;
+    private volatile double lastPipelineTimeMs = 0;
+
+    public ReplayCamera(FrameSource source) {
+        this.source = source;
+    }
+
+    public void setPipeline(OpenCvPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    public void setFrameListener(FrameListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Start over from the first frame when the recording runs out instead of stopping.
+     */
+    public void setLooping(boolean looping) {
+        this.looping = looping;
+    }
+
+    /**
+     * Replay on a background thread, like a camera streaming into its pipeline.
+     */
+    public synchronized void startStreaming(final Pacing pacing) {
+        if (thread != null) {
+            return;
+        }
+        streaming = true;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                replay(pacing);
+            }
+        }, "ReplayCamera");
+        thread.start();
+    }
+
+    public synchronized void stopStreaming() {
+        streaming = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    /**
+     * Replay every frame on the calling thread and return when the recording runs out (never, if
+     * looping). Nothing can stop it but interrupting the thread, so OpModes should use
+     * {@link #startStreaming(Pacing)} and watch {@link #isStreaming()} instead.
+     */
+    public void replayAll(Pacing pacing) {
+        streaming = true;
+        replay(pacing);
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public double getFps() {
+        return fps;
+    }
+
+    public double getPipelineTimeMs() {
+        return lastPipelineTimeMs;
+    }
+
+    /**
+     * Distribution of processFrame times over the whole replay.
+     */
+    public LatencyHistogram getPipelineTimeHistogram() {
+        return pipelineTime;
+    }
+
+    public void close() {
+        stopStreaming();
+        source.close();
+        frame.release();
+    }
+
+    private void replay(Pacing pacing) {
+        long firstCapture = -1;
+        long wallStart = System.nanoTime();
+        long replayStart = wallStart;
+        boolean initialized = false;
+
+        try {
+            while (streaming && !Thread.currentThread().isInterrupted()) {
+                long captureTimeNanos = source.next(frame);
+                if (captureTimeNanos < 0) {
+                    if (!looping) {
+                        break;
+                    }
+                    source.rewind();
+                    firstCapture = -1;
+                    continue;
+                }
+
+                if (pacing == Pacing.REAL_TIME) {
+                    if (firstCapture < 0) {
+                        firstCapture = captureTimeNanos;
+                        wallStart = System.nanoTime();
+                    }
+                    long due = wallStart + (captureTimeNanos - firstCapture);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+                    }
+                }
+
+                OpenCvPipeline current = pipeline;
+                Mat output = frame;
+                if (current != null) {
+                    if (!initialized) {
+                        current.init(frame);
+                        initialized = true;
+                    }
+                    long start = System.nanoTime();
+                    output = current.processFrame(frame);
+                    long elapsed = System.nanoTime() - start;
+                    pipelineTime.record(elapsed);
+                    lastPipelineTimeMs = elapsed / 1e6;
+                }
+
+                long processed = ++frameCount;
+                fps = processed / ((System.nanoTime() - replayStart) / 1e9);
+
+                FrameListener frameListener = listener;
+                if (frameListener != null) {
+                    frameListener.onFrameProcessed(processed - 1, captureTimeNanos, output);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            streaming = false;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Mat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Replays a ring file written by {@link FrameRecorder}, oldest frame first. Slots that were
+ * never filled or were being written when the recording stopped are skipped.
+ */
+public class RingFileFrameSource implements FrameSource {
+    private final RandomAccessFile file;
+    private final MappedByteBuffer mapped;
+    private final ByteBuffer readView;
+    private final int slotBytes;
+    private final int dataOffset;
+    private final int[] slotsInOrder;
+    private final byte[] data;
+    private int index = 0;
+
+    public RingFileFrameSource(File path) throws IOException {
+        file = new RandomAccessFile(path, "r");
+        mapped = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        mapped.order(ByteOrder.BIG_ENDIAN);
+        readView = mapped.duplicate();
+
+        if (mapped.getInt(0) != FrameRecorder.MAGIC || mapped.getInt(4) != FrameRecorder.VERSION) {
+            file.close();
+            throw new IOException(path + " is not a frame recording");
+        }
+        int slotCount = mapped.getInt(8);
+        slotBytes = mapped.getInt(12);
+        dataOffset = FrameRecorder.dataOffset(slotCount);
+        data = new byte[slotBytes];
+
+        // Order the filled slots by sequence number
+        long[] keyed = new long[slotCount];
+        int filled = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            long sequence = mapped.getLong(entry(slot));
+            if (sequence >= 0) {
+                keyed[filled++] = sequence * slotCount + slot;
+            }
+        }
+        Arrays.sort(keyed, 0, filled);
+        slotsInOrder = new int[filled];
+        for (int i = 0; i < filled; i++) {
+            slotsInOrder[i] = (int) (keyed[i] % slotCount);
+        }
+    }
+
+    public int getFrameCount() {
+        return slotsInOrder.length;
+    }
+
+    @Override
+    public long next(Mat frame) {
+        if (index >= slotsInOrder.length) {
+            return -1;
+        }
+        int slot = slotsInOrder[index++];
+        int entry = entry(slot);
+        long captureTimeNanos = mapped.getLong(entry + 8);
+        int width = mapped.getInt(entry + 16);
+        int height = mapped.getInt(entry + 20);
+        int type = mapped.getInt(entry + 24);
+        int length = mapped.getInt(entry + 28);
+
+        readView.position(dataOffset + slot * slotBytes);
+        readView.get(data, 0, length);
+        frame.create(height, width, type);
+        frame.put(0, 0, data, 0, length);
+        return captureTimeNanos;
+    }
+
+    @Override
+    public void rewind() {
+        index = 0;
+    }
+
+    @Override
+    public void close() {
+        try {
+            file.close();
+        } catch (IOException e) {
+            // Nothing left to do with it
+        }
+    }
+
+    private static int entry(int slot) {
+        return FrameRecorder.HEADER_BYTES + slot * FrameRecorder.INDEX_ENTRY_BYTES;
+    }
+}
@@ -0,0 +1,171 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Tells the ball from the cube by the mean Cb of a sample region (or of several, see
+ * {@link #setRegions(Rect...)}). Used by {@link RHSBallOrCube}.
+ */
+public class SamplePipeline extends OverlayPipeline {
+    private static final Scalar BLUE = new Scalar(0, 0, 255);
+
+    static final int THRESHOLD = 107;
+
+    // Stages recorded on the stage timer
+    static final int CVT_COLOR = 0;
+    static final int EXTRACT_CHANNEL = 1;
+    static final int MEAN = 2;
+    static final int INTEGRAL = 3;
+    static final int FUSED_CHROMA = 4;
+
+    Point topLeft = new Point(50, 50);
+    Point bottomRight = new Point(100, 100);
+
+    Mat region1_Cb;
+    Mat YCrCb = new Mat();
+    Mat Cb = new Mat();
+
+    // Region sampling mode, used instead of region1 when regions are set
+    private final RegionSampler sampler = new RegionSampler();
+    private volatile Rect[] regions = null;
+    private double[] regionMeans = new double[0];
+    private volatile int[] regionAverages = new int[0];
+
+    // Fused mode writes Cb straight from RGB without the 3 channel YCrCb Mat
+    private final ChromaKernel chromaKernel = new ChromaKernel();
+    private volatile boolean fusedChroma = false;
+
+    private volatile int average;
+    private volatile TYPE type = TYPE.BALL;
+
+    public SamplePipeline() {
+        super("cvtColor", "extractChannel", "mean", "integral", "fusedChroma");
+    }
+
+    private void inputToCb(Mat input) {
+        long t = stageTimer.now();
+        if (fusedChroma) {
+            chromaKernel.cb(input, Cb);
+            stageTimer.record(FUSED_CHROMA, t);
+            return;
+        }
+        Imgproc.cvtColor(input, YCrCb, Imgproc.COLOR_RGB2YCrCb);
+        t = stageTimer.record(CVT_COLOR, t);
+        Core.extractChannel(YCrCb, Cb, 2);
+        stageTimer.record(EXTRACT_CHANNEL, t);
+    }
+
+    @Override
+    public void init(Mat input) {
+        inputToCb(input);
+
+        region1_Cb = Cb.submat(new Rect(topLeft, bottomRight));
+    }
+
+    @Override
+    protected Mat analyze(Mat input, boolean overlay) {
+        inputToCb(input);
+
+        Rect[] regions = this.regions;
+        long t = stageTimer.now();
+        if (regions == null) {
+            average = (int) Core.mean(region1_Cb).val[0];
+            stageTimer.record(MEAN, t);
+        } else {
+            sampler.update(Cb);
+            t = stageTimer.record(INTEGRAL, t);
+            if (regionMeans.length != regions.length) {
+                regionMeans = new double[regions.length];
+            }
+            sampler.means(regions, regionMeans);
+            int[] averages = new int[regions.length];
+            for (int i = 0; i < averages.length; i++) {
+                averages[i] = (int) regionMeans[i];
+            }
+            regionAverages = averages;
+            average = averages[0];
+            stageTimer.record(MEAN, t);
+        }
+
+        if (average > THRESHOLD) {
+            type = TYPE.BALL;
+        } else {
+            type = TYPE.CUBE;
+        }
+
+        return input;
+    }
+
+    @Override
+    protected void drawOverlay(Mat input, Mat output) {
+        Rect[] regions = this.regions;
+        if (regions == null) {
+            Imgproc.rectangle(input, topLeft, bottomRight, BLUE, 2);
+        } else {
+            for (Rect region : regions) {
+                Imgproc.rectangle(input, region, BLUE, 2);
+            }
+        }
+    }
+
+    public void setFusedChroma(boolean fusedChroma) {
+        this.fusedChroma = fusedChroma;
+    }
+
+    /**
+     * Sample the mean Cb of each of these regions every frame instead of the fixed region.
+     * The average and type then describe the first region. Pass nothing to go back to the
+     * fixed region.
+     */
+    public void setRegions(Rect... regions) {
+        if (regions == null || regions.length == 0) {
+            this.regions = null;
+            regionAverages = new int[0];
+        } else {
+            this.regions = regions.clone();
+        }
+    }
+
+    /**
+     * Split the area into a cols by rows grid of sample regions.
+     */
+    public void setGridRegions(Rect area, int cols, int rows) {
+        Rect[] grid = new Rect[cols * rows];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                grid[r * cols + c] = new Rect(
+                        area.x + area.width * c / cols, area.y + area.height * r / rows,
+                        area.width / cols, area.height / rows);
+            }
+        }
+        setRegions(grid);
+    }
+
+    /**
+     * @return mean Cb of each region from the last frame, in the order they were set
+     */
+    public int[] getRegionAverages() {
+        return regionAverages;
+    }
+
+    public TYPE getRegionType(int region) {
+        return regionAverages[region] > THRESHOLD ? TYPE.BALL : TYPE.CUBE;
+    }
+
+    public TYPE getType() {
+        return type;
+    }
+
+    public int getAverage() {
+        return average;
+    }
+
+    public enum TYPE {
+        BALL, CUBE
+    }
+}
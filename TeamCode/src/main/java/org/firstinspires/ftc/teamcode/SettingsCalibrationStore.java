@@ -0,0 +1,53 @@
+package org.firstinspires.ftc.teamcode;
+
+import android.content.Context;
+
+import com.qualcomm.robotcore.util.ReadWriteFile;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.ftccommon.external.OnCreate;
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+import org.opencv.core.Scalar;
+
+import java.io.File;
+
+/**
+ * Keeps the last {@link ChromaCalibrator} bounds in a file in the Robot Controller's settings
+ * folder. Installed when the app starts.
+ */
+public class SettingsCalibrationStore implements ChromaCalibrator.Store {
+    static final String CALIBRATION_FILE = "ContourPipelineCalibration.txt";
+
+    @OnCreate
+    public static void install(Context context) {
+        ChromaCalibrator.setStore(new SettingsCalibrationStore());
+    }
+
+    @Override
+    public void save(Scalar lower, Scalar upper) {
+        ReadWriteFile.writeFile(calibrationFile(), lower.val[0] + "," + lower.val[1] + "," + lower.val[2] + ","
+                + upper.val[0] + "," + upper.val[1] + "," + upper.val[2]);
+    }
+
+    @Override
+    public Scalar[] load() {
+        File file = calibrationFile();
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            String[] values = ReadWriteFile.readFile(file).trim().split(",");
+            return new Scalar[]{
+                    new Scalar(Double.parseDouble(values[0]), Double.parseDouble(values[1]), Double.parseDouble(values[2])),
+                    new Scalar(Double.parseDouble(values[3]), Double.parseDouble(values[4]), Double.parseDouble(values[5]))
+            };
+        } catch (RuntimeException e) {
+            RobotLog.ee("ChromaCalibrator", e, "Ignoring unreadable %s", file);
+            return null;
+        }
+    }
+
+    private static File calibrationFile() {
+        return AppUtil.getInstance().getSettingsFile(CALIBRATION_FILE);
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2019 OpenFTC Team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+ * With this pipeline, we demonstrate how to change which stage of
+ * is rendered to the viewport when the viewport is tapped. This is
+ * particularly useful during pipeline development. We also show how
+ * to get data from the pipeline to your OpMode.
+ */
+public class StageSwitchingPipeline extends OverlayPipeline
+{
+    static final Scalar CONTOUR_COLOR = new Scalar(0, 0, 255);
+
+    /*
+     * Stages recorded on the stage timer
+     */
+    static final int CVT_COLOR = 0;
+    static final int EXTRACT_CHANNEL = 1;
+    static final int THRESHOLD_STAGE = 2;
+    static final int FIND_CONTOURS = 3;
+
+    Mat yCbCrChan2Mat = new Mat();
+    Mat thresholdMat = new Mat();
+    Mat contoursOnFrameMat = new Mat();
+    Mat hierarchy = new Mat();
+    List<MatOfPoint> contoursList = new ArrayList<>();
+    volatile int numContoursFound;
+
+    /*
+     * Each viewport stage knows how many of the processing stages it needs, so
+     * a frame only runs as far as what is shown on the viewport (or wanted by a
+     * listener) requires. RAW_IMAGE with no listeners costs nothing.
+     */
+    enum Stage
+    {
+        YCbCr_CHAN2(EXTRACT_CHANNEL + 1),
+        THRESHOLD(THRESHOLD_STAGE + 1),
+        CONTOURS_OVERLAYED_ON_FRAME(FIND_CONTOURS + 1),
+        RAW_IMAGE(0);
+
+        final int stagesNeeded;
+
+        Stage(int stagesNeeded)
+        {
+            this.stagesNeeded = stagesNeeded;
+        }
+    }
+
+    /*
+     * Called on the frame worker thread with the contours of every frame
+     * while registered
+     */
+    public interface ContourListener
+    {
+        void onContoursFound(List<MatOfPoint> contours);
+    }
+
+    private final List<ContourListener> contourListeners = new CopyOnWriteArrayList<>();
+
+    private volatile Stage stageToRenderToViewport = Stage.YCbCr_CHAN2;
+    private Stage[] stages = Stage.values();
+
+    public StageSwitchingPipeline()
+    {
+        super("cvtColor", "extractChannel", "threshold", "findContours");
+    }
+
+    @Override
+    public void onViewportTapped()
+    {
+        /*
+         * Note that this method is invoked from the UI thread
+         * so whatever we do here, we must do quickly.
+         */
+
+        int currentStageNum = stageToRenderToViewport.ordinal();
+
+        int nextStageNum = currentStageNum + 1;
+
+        if(nextStageNum >= stages.length)
+        {
+            nextStageNum = 0;
+        }
+
+        stageToRenderToViewport = stages[nextStageNum];
+    }
+
+    public void addContourListener(ContourListener listener)
+    {
+        contourListeners.add(listener);
+    }
+
+    public void removeContourListener(ContourListener listener)
+    {
+        contourListeners.remove(listener);
+    }
+
+    @Override
+    protected Mat analyze(Mat input, boolean overlay)
+    {
+        Stage stage = stageToRenderToViewport;
+
+        /*
+         * Without the overlay the contours stage shows the raw frame
+         */
+        int stagesNeeded = stage == Stage.CONTOURS_OVERLAYED_ON_FRAME && !overlay
+                ? 0 : stage.stagesNeeded;
+        if(!contourListeners.isEmpty())
+        {
+            stagesNeeded = FIND_CONTOURS + 1;
+        }
+
+        /*
+         * This pipeline finds the contours of yellow blobs such as the Gold Mineral
+         * from the Rover Ruckus game.
+         */
+        long t = stageTimer.now();
+        if(stagesNeeded > CVT_COLOR)
+        {
+            Imgproc.cvtColor(input, yCbCrChan2Mat, Imgproc.COLOR_RGB2YCrCb);
+            t = stageTimer.record(CVT_COLOR, t);
+        }
+        if(stagesNeeded > EXTRACT_CHANNEL)
+        {
+            Core.extractChannel(yCbCrChan2Mat, yCbCrChan2Mat, 2);
+            t = stageTimer.record(EXTRACT_CHANNEL, t);
+        }
+        if(stagesNeeded > THRESHOLD_STAGE)
+        {
+            Imgproc.threshold(yCbCrChan2Mat, thresholdMat, 102, 255, Imgproc.THRESH_BINARY_INV);
+            t = stageTimer.record(THRESHOLD_STAGE, t);
+        }
+        if(stagesNeeded > FIND_CONTOURS)
+        {
+            for(MatOfPoint contour : contoursList)
+            {
+                contour.release();
+            }
+            contoursList.clear();
+            Imgproc.findContours(thresholdMat, contoursList, hierarchy, Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
+            stageTimer.record(FIND_CONTOURS, t);
+            numContoursFound = contoursList.size();
+
+            for(ContourListener listener : contourListeners)
+            {
+                listener.onContoursFound(contoursList);
+            }
+        }
+
+        switch (stage)
+        {
+            case YCbCr_CHAN2:
+            {
+                return yCbCrChan2Mat;
+            }
+
+            case THRESHOLD:
+            {
+                return thresholdMat;
+            }
+
+            case CONTOURS_OVERLAYED_ON_FRAME:
+            {
+                /*
+                 * The overlay is drawn in drawOverlay(), so without it this stage
+                 * is just the raw frame.
+                 */
+                return overlay ? contoursOnFrameMat : input;
+            }
+
+            case RAW_IMAGE:
+
+            default:
+            {
+                return input;
+            }
+        }
+    }
+
+    @Override
+    protected void drawOverlay(Mat input, Mat output)
+    {
+        /*
+         * Only the contours stage has anything drawn on it
+         */
+        if(output == contoursOnFrameMat)
+        {
+            input.copyTo(contoursOnFrameMat);
+            Imgproc.drawContours(contoursOnFrameMat, contoursList, -1, CONTOUR_COLOR, 3, 8);
+        }
+    }
+
+    public int getNumContoursFound()
+    {
+        return numContoursFound;
+    }
+}
@@ -0,0 +1,121 @@
+package org.firstinspires.ftc.teamcode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-stage nanosecond timing for a vision pipeline. Each stage gets its own
+ * {@link LatencyHistogram}; a stage is timed by carrying a timestamp through the code:
+ *
+ * <pre>
+ *     long t = timer.now();
+ *     Imgproc.cvtColor(...);
+ *     t = timer.record(CVT_COLOR, t);
+ *     Core.inRange(...);
+ *     t = timer.record(IN_RANGE, t);
+ * </pre>
+ *
+ * Nothing is allocated while recording. {@link #publishIfDue(String)} sends p50/p95/p99/max of
+ * every stage to the {@link Publisher} at most once per publish interval and then starts a new
+ * window. On the robot that is FtcDashboard (see {@link DashboardPublisher}); off the robot
+ * nothing is published unless a publisher is set.
+ */
+public class StageTimer {
+    static final long DEFAULT_PUBLISH_INTERVAL_MS = 1000;
+
+    /**
+     * Where the percentiles go, one batch of named values per publish.
+     */
+    public interface Publisher {
+        void publish(Map<String, Double> values);
+    }
+
+    private static volatile Publisher publisher;
+
+    private final String[] stageNames;
+    private final LatencyHistogram[] histograms;
+
+    private volatile long publishIntervalNanos = DEFAULT_PUBLISH_INTERVAL_MS * 1000000L;
+    private long lastPublishNanos = System.nanoTime();
+
+    public StageTimer(String... stageNames) {
+        this.stageNames = stageNames.clone();
+        this.histograms = new LatencyHistogram[stageNames.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the time since startNanos against the given stage.
+     *
+     * @return the current time, to start the next stage from
+     */
+    public long record(int stage, long startNanos) {
+        long now = System.nanoTime();
+        histograms[stage].record(now - startNanos);
+        return now;
+    }
+
+    public int getStageCount() {
+        return stageNames.length;
+    }
+
+    public String getStageName(int stage) {
+        return stageNames[stage];
+    }
+
+    public LatencyHistogram getHistogram(int stage) {
+        return histograms[stage];
+    }
+
+    /**
+     * Send every timer's percentiles here from now on, or nowhere with null.
+     */
+    public static void setPublisher(Publisher publisher) {
+        StageTimer.publisher = publisher;
+    }
+
+    /**
+     * How often to publish. 0 stops publishing.
+     */
+    public void setPublishIntervalMs(long publishIntervalMs) {
+        this.publishIntervalNanos = publishIntervalMs * 1000000L;
+    }
+
+    /**
+     * Send the stage percentiles to the publisher if the publish interval has passed, then clear
+     * the histograms so the next packet covers only the frames since this one.
+     */
+    public void publishIfDue(String prefix) {
+        long interval = publishIntervalNanos;
+        long now = System.nanoTime();
+        if (interval <= 0 || now - lastPublishNanos < interval) {
+            return;
+        }
+        lastPublishNanos = now;
+
+        Publisher current = publisher;
+        if (current == null) {
+            return;
+        }
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (int i = 0; i < histograms.length; i++) {
+            LatencyHistogram histogram = histograms[i];
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            String key = prefix + " " + stageNames[i];
+            values.put(key + " p50 ms", histogram.getPercentileNanos(50) / 1e6);
+            values.put(key + " p95 ms", histogram.getPercentileNanos(95) / 1e6);
+            values.put(key + " p99 ms", histogram.getPercentileNanos(99) / 1e6);
+            values.put(key + " max ms", histogram.getMaxNanos() / 1e6);
+            histogram.reset();
+        }
+        current.publish(values);
+    }
+}
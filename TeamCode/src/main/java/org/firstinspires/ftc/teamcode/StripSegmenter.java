@@ -0,0 +1,236 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runs ContourPipeline's cvtColor, inRange, open/close and blur chain on horizontal strips of
+ * the frame in parallel, then stitches the strip masks back together.
+ *
+ * Each strip is read with {@link #overlapFor} extra rows above and below so the morphology and
+ * the tall blur kernel see the same neighbourhood they would on the whole frame; only the strip's
+ * own rows are copied into the merged mask. All Mats are kept between frames, including the strip
+ * views of the last {@link #BOUND_INPUTS} inputs, so the alternating pyramid buffers of a
+ * pipelined ContourPipeline don't need new views every frame.
+ */
+public class StripSegmenter {
+    // ContourPipeline hands in one of two FrameBuffers' Mats, alternating
+    static final int BOUND_INPUTS = 2;
+
+    private final int strips;
+    private final int overlap;
+    private final ForkJoinPool pool;
+    private final List<Callable<Void>> tasks = new ArrayList<>();
+    private final Strip[] stripState;
+
+    private Mat mask = new Mat();
+    private int width;
+    private int height;
+    private int type = -1;
+
+    // Which input each slot of the strips' views was made from
+    private final long[] boundObj = new long[BOUND_INPUTS];
+    private final long[] boundData = new long[BOUND_INPUTS];
+    private int nextSlot;
+    private volatile int slot;
+
+    private volatile Scalar lower;
+    private volatile Scalar upper;
+
+    public StripSegmenter(int strips, Mat openKernel, Mat closeKernel, Size blurSize) {
+        if (strips < 1) {
+            throw new IllegalArgumentException("Need at least one strip, was " + strips);
+        }
+        this.strips = strips;
+        this.overlap = overlapFor(openKernel, closeKernel, blurSize);
+        this.pool = new ForkJoinPool(strips);
+        this.stripState = new Strip[strips];
+        for (int i = 0; i < strips; i++) {
+            final Strip strip = new Strip(openKernel, closeKernel, blurSize);
+            stripState[i] = strip;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    strip.run(slot, lower, upper);
+                    return null;
+                }
+            });
+        }
+    }
+
+    public int getStrips() {
+        return strips;
+    }
+
+    /**
+     * Rows of context each strip needs on either side. Every erode or dilate only gets rows right
+     * that are at least half its kernel away from the strip's edge, and an open or close is one of
+     * each; the blur then needs half its own height on top of that.
+     */
+    static int overlapFor(Mat openKernel, Mat closeKernel, Size blurSize) {
+        return 2 * (openKernel.rows() / 2) + 2 * (closeKernel.rows() / 2) + (int) blurSize.height / 2;
+    }
+
+    /**
+     * Threshold input (RGB) into a binary mask.
+     *
+     * @return the merged mask, owned by this segmenter and reused next frame
+     */
+    public Mat segment(Mat input, Scalar lowerYCrCb, Scalar upperYCrCb) throws InterruptedException {
+        if (input.cols() != width || input.rows() != height || input.type() != type) {
+            layout(input);
+        }
+        slot = bind(input);
+        lower = lowerYCrCb;
+        upper = upperYCrCb;
+
+        List<Future<Void>> results = pool.invokeAll(tasks);
+        for (Future<Void> result : results) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        return mask;
+    }
+
+    public void release() {
+        pool.shutdown();
+        for (Strip strip : stripState) {
+            strip.releaseViews();
+            strip.release();
+        }
+        mask.release();
+    }
+
+    private void layout(Mat input) {
+        width = input.cols();
+        height = input.rows();
+        type = input.type();
+        mask.create(height, width, CvType.CV_8UC1);
+
+        int rowsPerStrip = (height + strips - 1) / strips;
+        for (int i = 0; i < strips; i++) {
+            int top = Math.min(height, i * rowsPerStrip);
+            int bottom = Math.min(height, top + rowsPerStrip);
+            int readTop = Math.max(0, top - overlap);
+            int readBottom = Math.min(height, bottom + overlap);
+            stripState[i].layout(mask, width, top, bottom, readTop, readBottom);
+        }
+        for (int i = 0; i < BOUND_INPUTS; i++) {
+            boundObj[i] = 0;
+            boundData[i] = 0;
+        }
+    }
+
+    /**
+     * Slot holding the strips' views of input, made now if input isn't one of the bound ones.
+     * The data address is compared too, so a Mat that was reallocated gets new views.
+     */
+    private int bind(Mat input) {
+        long obj = input.nativeObj;
+        long data = input.dataAddr();
+        for (int i = 0; i < BOUND_INPUTS; i++) {
+            if (boundObj[i] == obj && boundData[i] == data) {
+                return i;
+            }
+        }
+        int bound = nextSlot;
+        nextSlot = (nextSlot + 1) % BOUND_INPUTS;
+        boundObj[bound] = obj;
+        boundData[bound] = data;
+        for (Strip strip : stripState) {
+            strip.bind(bound, input, width);
+        }
+        return bound;
+    }
+
+    private static class Strip {
+        private final Mat openKernel;
+        private final Mat closeKernel;
+        private final Size blurSize;
+        private final Mat yCrCb = new Mat();
+        private final Mat processed = new Mat();
+
+        private final Mat[] in = new Mat[BOUND_INPUTS];  // input rows this strip reads, overlap included
+        private Mat core;     // rows of processed that belong to this strip
+        private Mat out;      // the same rows of the merged mask
+        private int readTop;
+        private int readBottom;
+        private boolean empty;
+
+        Strip(Mat openKernel, Mat closeKernel, Size blurSize) {
+            this.openKernel = openKernel;
+            this.closeKernel = closeKernel;
+            this.blurSize = blurSize;
+        }
+
+        void layout(Mat mask, int width, int top, int bottom, int readTop, int readBottom) {
+            releaseViews();
+            empty = bottom <= top;
+            if (empty) {
+                return;
+            }
+            this.readTop = readTop;
+            this.readBottom = readBottom;
+            processed.create(readBottom - readTop, width, CvType.CV_8UC1);
+            core = processed.submat(new Rect(0, top - readTop, width, bottom - top));
+            out = mask.submat(new Rect(0, top, width, bottom - top));
+        }
+
+        void bind(int slot, Mat input, int width) {
+            if (empty) {
+                return;
+            }
+            if (in[slot] != null) {
+                in[slot].release();
+            }
+            in[slot] = input.submat(new Rect(0, readTop, width, readBottom - readTop));
+        }
+
+        void run(int slot, Scalar lower, Scalar upper) {
+            if (empty) {
+                return;
+            }
+            Imgproc.cvtColor(in[slot], yCrCb, Imgproc.COLOR_RGB2YCrCb);
+            Core.inRange(yCrCb, lower, upper, processed);
+            Imgproc.morphologyEx(processed, processed, Imgproc.MORPH_OPEN, openKernel);
+            Imgproc.morphologyEx(processed, processed, Imgproc.MORPH_CLOSE, closeKernel);
+            Imgproc.GaussianBlur(processed, processed, blurSize, 0.00);
+            core.copyTo(out);
+        }
+
+        void release() {
+            yCrCb.release();
+            processed.release();
+        }
+
+        void releaseViews() {
+            for (int i = 0; i < BOUND_INPUTS; i++) {
+                if (in[i] != null) {
+                    in[i].release();
+                    in[i] = null;
+                }
+            }
+            if (core != null) {
+                core.release();
+                out.release();
+                core = null;
+                out = null;
+            }
+        }
+    }
+}
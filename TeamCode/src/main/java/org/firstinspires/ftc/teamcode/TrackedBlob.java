@@ -0,0 +1,29 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * One blob reported by {@link BlobTracker}. The id stays the same for as long as the blob
+ * keeps being matched to itself from frame to frame.
+ */
+public final class TrackedBlob {
+    public final int id;
+    public final int x;
+    public final int y;
+    public final int width;
+    public final int height;
+    public final double area;
+    public final double midpointX;
+    public final double midpointY;
+    public final int age;   // frames this id has been tracked
+
+    public TrackedBlob(int id, int x, int y, int width, int height, int age) {
+        this.id = id;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.area = (double) width * height;
+        this.midpointX = x + (width / 2.0);
+        this.midpointY = y + (height / 2.0);
+        this.age = age;
+    }
+}
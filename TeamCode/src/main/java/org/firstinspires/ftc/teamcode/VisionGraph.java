@@ -0,0 +1,240 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs several detectors ({@link VisionNode}s) on the same camera frame. Every intermediate any
+ * node asks for is computed once per frame into Mats from a {@link MatPool}, so e.g. a barcode
+ * detector and a freight classifier share one RGB to YCrCb conversion. The nodes then run
+ * concurrently, one per worker thread with the last on the camera thread, so a frame costs the
+ * shared intermediates plus the slowest node rather than the sum of them.
+ *
+ * Intermediates and nodes are recorded on the stage timer, the nodes under their class names.
+ */
+public class VisionGraph extends OverlayPipeline {
+    public enum Input {
+        RGB,    // the camera frame
+        YCRCB,  // RGB converted to YCrCb
+        CB,     // the Cb channel of YCRCB
+        MASK    // YCRCB thresholded on ContourPipeline's bounds, then opened, closed and blurred like its mask
+    }
+
+    // Stages recorded on the stage timer, followed by one per node
+    static final int CVT_COLOR = 0;
+    static final int EXTRACT_CHANNEL = 1;
+    static final int MASK = 2;
+    static final int FIRST_NODE = 3;
+
+    // The worker threads go away when the graph has not been fed for this long
+    static final long WORKER_IDLE_SECONDS = 2;
+
+    /**
+     * The intermediates of one frame. Only valid during {@link VisionNode#process}; read-only.
+     */
+    public static class Frame {
+        private final Mat[] mats = new Mat[Input.values().length];
+        private long sequence;
+        private long captureTimeNanos;
+
+        public Mat get(Input input) {
+            Mat mat = mats[input.ordinal()];
+            if (mat == null) {
+                throw new IllegalStateException(input + " was not declared as an input");
+            }
+            return mat;
+        }
+
+        public int getWidth() {
+            return mats[Input.RGB.ordinal()].cols();
+        }
+
+        public int getHeight() {
+            return mats[Input.RGB.ordinal()].rows();
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getCaptureTimeNanos() {
+            return captureTimeNanos;
+        }
+    }
+
+    private final VisionNode[] nodes;
+    private final Runnable[] tasks;
+    private final Future<?>[] pending;
+    private final ThreadPoolExecutor workers;
+    private final EnumSet<Input> needed = EnumSet.of(Input.RGB);
+    private final MatPool pool = new MatPool();
+    private final Frame frame = new Frame();
+    private final Mat openKernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(3, 3));
+    private final Mat closeKernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(3, 3));
+
+    public VisionGraph(VisionNode... nodes) {
+        super(stageNames(nodes));
+        if (nodes.length == 0) {
+            throw new IllegalArgumentException("Need at least one node");
+        }
+        this.nodes = nodes.clone();
+        this.tasks = new Runnable[nodes.length];
+        this.pending = new Future<?>[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            Set<Input> inputs = nodes[i].getInputs();
+            needed.addAll(inputs);
+            final int index = i;
+            tasks[i] = new Runnable() {
+                @Override
+                public void run() {
+                    long start = System.nanoTime();
+                    VisionGraph.this.nodes[index].process(frame);
+                    stageTimer.getHistogram(FIRST_NODE + index).record(System.nanoTime() - start);
+                }
+            };
+        }
+        // What the intermediates are made from
+        if (needed.contains(Input.CB) || needed.contains(Input.MASK)) {
+            needed.add(Input.YCRCB);
+        }
+
+        int threads = nodes.length - 1;
+        if (threads > 0) {
+            workers = new ThreadPoolExecutor(threads, threads, WORKER_IDLE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private int count = 0;
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "VisionGraph node " + (++count));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            workers.allowCoreThreadTimeOut(true);
+        } else {
+            workers = null;
+        }
+    }
+
+    private static String[] stageNames(VisionNode[] nodes) {
+        String[] names = new String[FIRST_NODE + nodes.length];
+        names[CVT_COLOR] = "cvtColor";
+        names[EXTRACT_CHANNEL] = "extractChannel";
+        names[MASK] = "mask";
+        for (int i = 0; i < nodes.length; i++) {
+            names[FIRST_NODE + i] = nodes[i].getClass().getSimpleName();
+        }
+        return names;
+    }
+
+    @Override
+    protected Mat analyze(Mat input, boolean overlay) {
+        long captureTimeNanos = System.nanoTime();
+        int rows = input.rows();
+        int cols = input.cols();
+
+        frame.mats[Input.RGB.ordinal()] = input;
+        frame.sequence++;
+        frame.captureTimeNanos = captureTimeNanos;
+
+        long t = stageTimer.now();
+        if (needed.contains(Input.YCRCB)) {
+            Mat yCrCb = pool.acquire(rows, cols, CvType.CV_8UC3);
+            Imgproc.cvtColor(input, yCrCb, Imgproc.COLOR_RGB2YCrCb);
+            frame.mats[Input.YCRCB.ordinal()] = yCrCb;
+            t = stageTimer.record(CVT_COLOR, t);
+        }
+        if (needed.contains(Input.CB)) {
+            Mat cb = pool.acquire(rows, cols, CvType.CV_8UC1);
+            Core.extractChannel(frame.mats[Input.YCRCB.ordinal()], cb, 2);
+            frame.mats[Input.CB.ordinal()] = cb;
+            t = stageTimer.record(EXTRACT_CHANNEL, t);
+        }
+        if (needed.contains(Input.MASK)) {
+            Mat mask = pool.acquire(rows, cols, CvType.CV_8UC1);
+            Core.inRange(frame.mats[Input.YCRCB.ordinal()],
+                    ContourPipeline.scalarLowerYCrCb, ContourPipeline.scalarUpperYCrCb, mask);
+            Imgproc.morphologyEx(mask, mask, Imgproc.MORPH_OPEN, openKernel);
+            Imgproc.morphologyEx(mask, mask, Imgproc.MORPH_CLOSE, closeKernel);
+            Imgproc.GaussianBlur(mask, mask, ContourPipeline.BLUR_SIZE, 0.00);
+            frame.mats[Input.MASK.ordinal()] = mask;
+            stageTimer.record(MASK, t);
+        }
+
+        runNodes();
+
+        for (Input intermediate : Input.values()) {
+            Mat mat = frame.mats[intermediate.ordinal()];
+            if (mat != null && intermediate != Input.RGB) {
+                pool.recycle(mat);
+            }
+            frame.mats[intermediate.ordinal()] = null;
+        }
+        return input;
+    }
+
+    private void runNodes() {
+        int last = nodes.length - 1;
+        for (int i = 0; i < last; i++) {
+            pending[i] = workers.submit(tasks[i]);
+        }
+        RuntimeException failure = null;
+        try {
+            tasks[last].run();
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+
+        // Every node has to be done with the frame before its Mats go back to the pool
+        boolean interrupted = false;
+        for (int i = 0; i < last; i++) {
+            while (true) {
+                try {
+                    pending[i].get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = new RuntimeException(e.getCause());
+                    }
+                    break;
+                }
+            }
+            pending[i] = null;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    protected void drawOverlay(Mat input, Mat output) {
+        for (VisionNode node : nodes) {
+            node.drawOverlay(output);
+        }
+    }
+
+    /**
+     * @return how many Mats the intermediates have ever needed; stays flat once warmed up
+     */
+    public int getAllocationCount() {
+        return pool.getCreated();
+    }
+}
@@ -0,0 +1,29 @@
+package org.firstinspires.ftc.teamcode;
+
+import org.opencv.core.Mat;
+
+import java.util.Set;
+
+/**
+ * One detector in a {@link VisionGraph}. It declares which intermediates it reads and the graph
+ * computes each of them once per frame for all nodes. Nodes run concurrently with each other, so
+ * they must treat the frame's Mats as read-only and keep their own working Mats.
+ */
+public interface VisionNode {
+    /**
+     * @return the intermediates {@link #process} reads; asked once when the graph is built
+     */
+    Set<VisionGraph.Input> getInputs();
+
+    /**
+     * Analyze the frame and publish the results. Called on a graph worker thread, or the
+     * camera thread for the last node.
+     */
+    void process(VisionGraph.Frame frame);
+
+    /**
+     * Draw this node's debug overlay. Called on the camera thread after every node has
+     * processed the frame, and only while the overlay is enabled.
+     */
+    void drawOverlay(Mat output);
+}
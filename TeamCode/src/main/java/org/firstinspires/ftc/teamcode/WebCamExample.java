@@ -42,6 +42,13 @@ public class WebCamExample extends LinearOpMode
 {
     OpenCvWebcam webcam;
 
+    /*
+     * Set to keep the last RECORDED_FRAMES raw frames in a ring file under FIRST/data/recordings
+     */
+    static final boolean RECORD_FRAMES = false;
+    static final int RECORDED_FRAMES = 300;
+    RecordingPipeline recording;
+
     @Override
     public void runOpMode()
     {
@@ -68,6 +75,16 @@ public class WebCamExample extends LinearOpMode
          */
         webcam.setPipeline(new SamplePipeline());
 
+        /*
+         * Optionally record what the camera sees. The recording pipeline copies each raw
+         * frame for the recorder and then runs our pipeline as usual.
+         */
+        if(RECORD_FRAMES)
+        {
+            recording = new RecordingPipeline(new SamplePipeline(), RECORDED_FRAMES);
+            webcam.setPipeline(recording);
+        }
+
         /*
          * Open the connection to the camera device. New in v1.4.0 is the ability
          * to open the camera asynchronously, and this is now the recommended way
@@ -115,59 +132,72 @@ public class WebCamExample extends LinearOpMode
         telemetry.update();
 
         /*
-         * Wait for the user to press start on the Driver Station
+         * The recording has to be closed however the OpMode ends, stop during init included
          */
-        waitForStart();
-
-        while (opModeIsActive())
+        try
         {
             /*
-             * Send some stats to the telemetry
+             * Wait for the user to press start on the Driver Station
              */
-            telemetry.addData("Frame Count", webcam.getFrameCount());
-            telemetry.addData("FPS", String.format("%.2f", webcam.getFps()));
-            telemetry.addData("Total frame time ms", webcam.getTotalFrameTimeMs());
-            telemetry.addData("Pipeline time ms", webcam.getPipelineTimeMs());
-            telemetry.addData("Overhead time ms", webcam.getOverheadTimeMs());
-            telemetry.addData("Theoretical max FPS", webcam.getCurrentPipelineMaxFps());
-            telemetry.update();
+            waitForStart();
 
-            /*
-             * NOTE: stopping the stream from the camera early (before the end of the OpMode
-             * when it will be automatically stopped for you) *IS* supported. The "if" statement
-             * below will stop streaming from the camera when the "A" button on gamepad 1 is pressed.
-             */
-            if(gamepad1.a)
+            while (opModeIsActive())
             {
                 /*
-                 * IMPORTANT NOTE: calling stopStreaming() will indeed stop the stream of images
-                 * from the camera (and, by extension, stop calling your vision pipeline). HOWEVER,
-                 * if the reason you wish to stop the stream early is to switch use of the camera
-                 * over to, say, Vuforia or TFOD, you will also need to call closeCameraDevice()
-                 * (commented out below), because according to the Android Camera API documentation:
-                 *         "Your application should only have one Camera object active at a time for
-                 *          a particular hardware camera."
-                 *
-                 * NB: calling closeCameraDevice() will internally call stopStreaming() if applicable,
-                 * but it doesn't hurt to call it anyway, if for no other reason than clarity.
-                 *
-                 * NB2: if you are stopping the camera stream to simply save some processing power
-                 * (or battery power) for a short while when you do not need your vision pipeline,
-                 * it is recommended to NOT call closeCameraDevice() as you will then need to re-open
-                 * it the next time you wish to activate your vision pipeline, which can take a bit of
-                 * time. Of course, this comment is irrelevant in light of the use case described in
-                 * the above "important note".
+                 * Send some stats to the telemetry
                  */
-                webcam.stopStreaming();
-                //webcam.closeCameraDevice();
-            }
+                telemetry.addData("Frame Count", webcam.getFrameCount());
+                telemetry.addData("FPS", String.format("%.2f", webcam.getFps()));
+                telemetry.addData("Total frame time ms", webcam.getTotalFrameTimeMs());
+                telemetry.addData("Pipeline time ms", webcam.getPipelineTimeMs());
+                telemetry.addData("Overhead time ms", webcam.getOverheadTimeMs());
+                telemetry.addData("Theoretical max FPS", webcam.getCurrentPipelineMaxFps());
+                telemetry.update();
 
-            /*
-             * For the purposes of this sample, throttle ourselves to 10Hz loop to avoid burning
-             * excess CPU cycles for no reason. (By default, telemetry is only sent to the DS at 4Hz
-             * anyway). Of course in a real OpMode you will likely not want to do this.
-             */
-            sleep(100);
+                /*
+                 * NOTE: stopping the stream from the camera early (before the end of the OpMode
+                 * when it will be automatically stopped for you) *IS* supported. The "if" statement
+                 * below will stop streaming from the camera when the "A" button on gamepad 1 is pressed.
+                 */
+                if(gamepad1.a)
+                {
+                    /*
+                     * IMPORTANT NOTE: calling stopStreaming() will indeed stop the stream of images
+                     * from the camera (and, by extension, stop calling your vision pipeline). HOWEVER,
+                     * if the reason you wish to stop the stream early is to switch use of the camera
+                     * over to, say, Vuforia or TFOD, you will also need to call closeCameraDevice()
+                     * (commented out below), because according to the Android Camera API documentation:
+                     *         "Your application should only have one Camera object active at a time for
+                     *          a particular hardware camera."
+                     *
+                     * NB: calling closeCameraDevice() will internally call stopStreaming() if applicable,
+                     * but it doesn't hurt to call it anyway, if for no other reason than clarity.
+                     *
+                     * NB2: if you are stopping the camera stream to simply save some processing power
+                     * (or battery power) for a short while when you do not need your vision pipeline,
+                     * it is recommended to NOT call closeCameraDevice() as you will then need to re-open
+                     * it the next time you wish to activate your vision pipeline, which can take a bit of
+                     * time. Of course, this comment is irrelevant in light of the use case described in
+                     * the above "important note".
+                     */
+                    webcam.stopStreaming();
+                    //webcam.closeCameraDevice();
+                }
+
+                /*
+                 * For the purposes of this sample, throttle ourselves to 10Hz loop to avoid burning
+                 * excess CPU cycles for no reason. (By default, telemetry is only sent to the DS at 4Hz
+                 * anyway). Of course in a real OpMode you will likely not want to do this.
+                 */
+                sleep(100);
+            }
+        }
+        finally
+        {
+            if(recording != null)
+            {
+                recording.close();
+            }
         }
     }
 